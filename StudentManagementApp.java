@@ -22,15 +22,31 @@ import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
+import javax.swing.event.TableModelEvent;
 import javax.swing.table.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.text.DecimalFormat;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class StudentManagementApp {
 
@@ -67,201 +83,3688 @@ public class StudentManagementApp {
         public void setEmail(String email) { this.email = email; }
     }
 
+    // ---------- Change Events ----------
+    // One typed diff published by StudentService after a mutation.
+    public static class StudentChange {
+        public enum Kind { INSERT, UPDATE, DELETE, BULK }
+
+        private final Kind kind;
+        private final int rollNo;          // roll after the change (DELETE: removed roll)
+        private final int previousRollNo;  // roll before the change (differs from rollNo when an UPDATE re-keys)
+        private final Student student;     // INSERT/UPDATE only
+        private final List<Student> roster; // BULK only: the whole roster after the change
+
+        private StudentChange(Kind kind, int rollNo, int previousRollNo, Student student, List<Student> roster) {
+            this.kind = kind;
+            this.rollNo = rollNo;
+            this.previousRollNo = previousRollNo;
+            this.student = student;
+            this.roster = roster;
+        }
+
+        public static StudentChange inserted(Student s) {
+            return new StudentChange(Kind.INSERT, s.getRollNo(), s.getRollNo(), s, null);
+        }
+        public static StudentChange updated(int previousRollNo, Student s) {
+            return new StudentChange(Kind.UPDATE, s.getRollNo(), previousRollNo, s, null);
+        }
+        public static StudentChange deleted(int rollNo) {
+            return new StudentChange(Kind.DELETE, rollNo, rollNo, null, null);
+        }
+        public static StudentChange bulk(List<Student> roster) {
+            return new StudentChange(Kind.BULK, 0, 0, null, Collections.unmodifiableList(roster));
+        }
+
+        public Kind getKind() { return kind; }
+        public int getRollNo() { return rollNo; }
+        public int getPreviousRollNo() { return previousRollNo; }
+        public Student getStudent() { return student; }
+        public List<Student> getRoster() { return roster; }
+    }
+
+    public interface StudentChangeListener {
+        // Called on the EDT with every change published since the previous batch, in order.
+        void studentsChanged(List<StudentChange> batch);
+    }
+
+    public interface MutationListener {
+        // Called synchronously while the service lock is held, once per change, in commit order.
+        void mutated(VersionedChange change);
+    }
+
+    // ---------- Versioned Change Log ----------
+    public static class VersionedChange {
+        private final long version;
+        private final StudentChange change;
+
+        public VersionedChange(long version, StudentChange change) {
+            this.version = version;
+            this.change = change;
+        }
+
+        public long getVersion() { return version; }
+        public StudentChange getChange() { return change; }
+    }
+
+    // Keeps the most recent changes; older ones are compacted away. Not thread-safe: the owning
+    // service guards it with its own lock.
+    public static class ChangeLog {
+        private final ArrayDeque<VersionedChange> entries = new ArrayDeque<>();
+        private final int capacity;
+
+        public ChangeLog(int capacity) {
+            if (capacity <= 0) throw new IllegalArgumentException("Change log capacity must be > 0.");
+            this.capacity = capacity;
+        }
+
+        void append(VersionedChange change) {
+            entries.addLast(change);
+            if (entries.size() > capacity) entries.removeFirst();
+        }
+
+        // Changes after sinceVersion in commit order, or null if the log no longer reaches back that far
+        // (or sinceVersion comes from a different run and is ahead of currentVersion).
+        List<VersionedChange> since(long sinceVersion, long currentVersion) {
+            if (sinceVersion > currentVersion) return null;
+            long oldest = entries.isEmpty() ? currentVersion + 1 : entries.peekFirst().getVersion();
+            if (sinceVersion < oldest - 1) return null;
+            List<VersionedChange> out = new ArrayList<>((int) (currentVersion - sinceVersion));
+            Iterator<VersionedChange> it = entries.descendingIterator();
+            while (it.hasNext()) {
+                VersionedChange c = it.next();
+                if (c.getVersion() <= sinceVersion) break;
+                out.add(c);
+            }
+            Collections.reverse(out);
+            return out;
+        }
+    }
+
+    // ---------- Change Bus (coalesces diffs into one batch per EDT frame) ----------
+    // Lock-free: publishers only append to a queue and, once per frame, schedule the flush. With no
+    // listeners nothing is queued, so headless modes never start the EDT.
+    public static class ChangeBus {
+        private final List<StudentChangeListener> listeners = new CopyOnWriteArrayList<>();
+        private final ConcurrentLinkedQueue<StudentChange> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean flushScheduled = new AtomicBoolean();
+        private final java.util.function.Consumer<List<StudentChange>> source;
+
+        public ChangeBus() {
+            this.source = null;
+        }
+
+        // The owner keeps pending changes itself (e.g. per-shard outboxes) and hands them over in order on flush
+        public ChangeBus(java.util.function.Consumer<List<StudentChange>> source) {
+            this.source = source;
+        }
+
+        public void addListener(StudentChangeListener l) { listeners.add(l); }
+        public void removeListener(StudentChangeListener l) { listeners.remove(l); }
+        public boolean hasListeners() { return !listeners.isEmpty(); }
+
+        public void publish(StudentChange change) {
+            if (listeners.isEmpty()) return;
+            pending.add(change);
+            requestFlush();
+        }
+
+        public void requestFlush() {
+            if (listeners.isEmpty()) return;
+            if (!flushScheduled.get() && flushScheduled.compareAndSet(false, true)) {
+                SwingUtilities.invokeLater(this::flush);
+            }
+        }
+
+        private void flush() {
+            // Cleared before draining, so a change queued during the drain schedules another flush
+            flushScheduled.set(false);
+            List<StudentChange> batch = new ArrayList<>();
+            for (StudentChange c; (c = pending.poll()) != null; ) batch.add(c);
+            if (source != null) source.accept(batch);
+            if (batch.isEmpty()) return;
+            // A BULK change carries the full roster, so anything queued before it is redundant
+            for (int i = batch.size() - 1; i > 0; i--) {
+                if (batch.get(i).getKind() == StudentChange.Kind.BULK) {
+                    batch = new ArrayList<>(batch.subList(i, batch.size()));
+                    break;
+                }
+            }
+            batch = Collections.unmodifiableList(batch);
+            for (StudentChangeListener l : listeners) l.studentsChanged(batch);
+        }
+    }
+
+    // ---------- Store contract (single-lock and partitioned services) ----------
+    public interface StudentStore {
+        boolean exists(int rollNo);
+        void add(Student s);
+        void update(int originalRoll, Student updated);
+        void delete(int rollNo);
+        List<Student> list();
+        void clear();
+        void replaceAll(Collection<Student> students);
+        List<Student> search(String text);
+        List<Student> query(StudentFilter filter);
+        int totalCount();
+        double averageMarks();
+        double highestMarks();
+        double lowestMarks();
+        double passRate(double passThreshold);
+        void addChangeListener(StudentChangeListener l);
+        void removeChangeListener(StudentChangeListener l);
+    }
+
+    // ---------- Filter Query Language (compiled predicates, block-at-a-time evaluation) ----------
+    // class = "10-A" and marks < 40 and email endsWith "@example.com"
+    //   fields:    roll, name, class, marks, phone, email
+    //   numbers:   = != < <= > >=        strings: = != contains startsWith endsWith (case-insensitive)
+    //   combine:   and, or, not, ( )
+    public static final class StudentFilter {
+        static final int BLOCK = 4096;               // rows per evaluation block
+        static final int PARALLEL_THRESHOLD = 50_000; // smaller rosters are filtered on the calling thread
+
+        private final String source;
+        private final java.util.function.Predicate<Student> row;       // whole expression, row at a time
+        private final List<java.util.function.Predicate<Student>> conjuncts; // top-level "and" terms, cheapest first
+
+        private StudentFilter(String source, Node root) {
+            this.source = source;
+            this.row = root.test;
+            List<Node> terms = new ArrayList<>();
+            root.flattenAnd(terms);
+            terms.sort(Comparator.comparingInt(n -> n.cost));
+            this.conjuncts = new ArrayList<>();
+            for (Node n : terms) conjuncts.add(n.test);
+        }
+
+        public static StudentFilter compile(String query) {
+            Parser p = new Parser(query);
+            Node root = p.parseOr();
+            if (p.peek() != null) throw p.error("Unexpected '" + p.peek() + "'");
+            return new StudentFilter(query, root);
+        }
+
+        public String getSource() { return source; }
+
+        public boolean test(Student s) { return row.test(s); }
+
+        public List<Student> filter(List<Student> rows) {
+            return filter(rows.toArray(new Student[0]));
+        }
+
+        // Each block runs the conjuncts one at a time over a selection vector of surviving rows,
+        // so a cheap numeric test drops most rows before any string is looked at.
+        public List<Student> filter(Student[] rows) {
+            int blocks = (rows.length + BLOCK - 1) / BLOCK;
+            if (rows.length < PARALLEL_THRESHOLD) {
+                List<Student> out = new ArrayList<>();
+                int[] sel = new int[Math.min(BLOCK, rows.length)];
+                for (int b = 0; b < blocks; b++) collect(rows, b, sel, out);
+                return out;
+            }
+            List<List<Student>> parts = new ArrayList<>(Collections.nCopies(blocks, null));
+            java.util.stream.IntStream.range(0, blocks).parallel().forEach(b -> {
+                List<Student> out = new ArrayList<>();
+                collect(rows, b, new int[BLOCK], out);
+                parts.set(b, out);
+            });
+            List<Student> out = new ArrayList<>();
+            for (List<Student> part : parts) out.addAll(part);
+            return out;
+        }
+
+        private void collect(Student[] rows, int block, int[] sel, List<Student> out) {
+            int from = block * BLOCK, to = Math.min(rows.length, from + BLOCK);
+            int n = 0;
+            for (int i = from; i < to; i++) sel[n++] = i;
+            for (java.util.function.Predicate<Student> term : conjuncts) {
+                int kept = 0;
+                for (int k = 0; k < n; k++) if (term.test(rows[sel[k]])) sel[kept++] = sel[k];
+                n = kept;
+                if (n == 0) return;
+            }
+            for (int k = 0; k < n; k++) out.add(rows[sel[k]]);
+        }
+
+        @Override
+        public String toString() { return source; }
+
+        // Compiled expression node; cost orders the top-level conjuncts
+        private static final class Node {
+            final java.util.function.Predicate<Student> test;
+            final int cost;
+            final List<Node> and; // non-null only for an "and" node
+
+            Node(java.util.function.Predicate<Student> test, int cost, List<Node> and) {
+                this.test = test;
+                this.cost = cost;
+                this.and = and;
+            }
+
+            void flattenAnd(List<Node> into) {
+                if (and == null) into.add(this);
+                else for (Node n : and) n.flattenAnd(into);
+            }
+        }
+
+        private static final class Parser {
+            private final String text;
+            private final List<String> tokens = new ArrayList<>();
+            private final List<Integer> offsets = new ArrayList<>();
+            private int pos = 0;
+
+            Parser(String text) {
+                this.text = text;
+                tokenize();
+                if (tokens.isEmpty()) throw new IllegalArgumentException("Empty filter.");
+            }
+
+            private void tokenize() {
+                int i = 0;
+                while (i < text.length()) {
+                    char c = text.charAt(i);
+                    if (Character.isWhitespace(c)) { i++; continue; }
+                    int start = i;
+                    if (c == '"') {
+                        // A quoted string keeps its quotes so it is never mistaken for a keyword; "" escapes a quote
+                        StringBuilder sb = new StringBuilder("\"");
+                        i++;
+                        while (true) {
+                            if (i >= text.length()) throw new IllegalArgumentException("Unterminated string at " + start + ".");
+                            char d = text.charAt(i++);
+                            if (d == '"') {
+                                if (i < text.length() && text.charAt(i) == '"') { sb.append('"'); i++; }
+                                else break;
+                            } else {
+                                sb.append(d);
+                            }
+                        }
+                        tokens.add(sb.toString());
+                    } else if ("()".indexOf(c) >= 0) {
+                        tokens.add(String.valueOf(c));
+                        i++;
+                    } else if ("=!<>".indexOf(c) >= 0) {
+                        i++;
+                        if (i < text.length() && (text.charAt(i) == '=' || (c == '<' && text.charAt(i) == '>'))) i++;
+                        String op = text.substring(start, i);
+                        tokens.add(op.equals("==") ? "=" : op.equals("<>") ? "!=" : op);
+                    } else {
+                        while (i < text.length() && !Character.isWhitespace(text.charAt(i))
+                                && "()=!<>\"".indexOf(text.charAt(i)) < 0) i++;
+                        tokens.add(text.substring(start, i));
+                    }
+                    offsets.add(start);
+                }
+            }
+
+            String peek() { return pos < tokens.size() ? tokens.get(pos) : null; }
+
+            private boolean keyword(String word) {
+                String t = peek();
+                if (t == null || !t.equalsIgnoreCase(word)) return false;
+                pos++;
+                return true;
+            }
+
+            private String next(String what) {
+                String t = peek();
+                if (t == null) throw error("Expected " + what + " but the filter ended");
+                pos++;
+                return t;
+            }
+
+            IllegalArgumentException error(String message) {
+                int at = pos < offsets.size() ? offsets.get(pos) : text.length();
+                return new IllegalArgumentException(message + " at position " + at + ".");
+            }
+
+            Node parseOr() {
+                Node left = parseAnd();
+                while (keyword("or")) {
+                    Node l = left, r = parseAnd();
+                    left = new Node(l.test.or(r.test), l.cost + r.cost, null);
+                }
+                return left;
+            }
+
+            Node parseAnd() {
+                List<Node> terms = new ArrayList<>();
+                terms.add(parseNot());
+                while (keyword("and")) terms.add(parseNot());
+                if (terms.size() == 1) return terms.get(0);
+                // Row-at-a-time form also runs cheapest first; && short-circuits the rest
+                List<Node> ordered = new ArrayList<>(terms);
+                ordered.sort(Comparator.comparingInt(n -> n.cost));
+                java.util.function.Predicate<Student> all = ordered.get(0).test;
+                int cost = ordered.get(0).cost;
+                for (int i = 1; i < ordered.size(); i++) {
+                    all = all.and(ordered.get(i).test);
+                    cost += ordered.get(i).cost;
+                }
+                return new Node(all, cost, terms);
+            }
+
+            Node parseNot() {
+                if (keyword("not")) {
+                    Node inner = parseNot();
+                    return new Node(inner.test.negate(), inner.cost, null);
+                }
+                if ("(".equals(peek())) {
+                    pos++;
+                    Node inner = parseOr();
+                    if (!")".equals(next("')'"))) { pos--; throw error("Expected ')'"); }
+                    return inner;
+                }
+                return parseComparison();
+            }
+
+            Node parseComparison() {
+                String field = next("a field").toLowerCase();
+                String op = next("an operator");
+                String raw = next("a value");
+                boolean quoted = raw.startsWith("\"");
+                String value = quoted ? raw.substring(1) : raw;
+                switch (field) {
+                    case "roll": case "rollno": {
+                        double v = number(field, value, quoted);
+                        if (v != Math.rint(v)) {
+                            pos--;
+                            throw error("Roll No must be a whole number");
+                        }
+                        return new Node(intTest(op, (int) v), 1, null);
+                    }
+                    case "marks": return new Node(doubleTest(op, number(field, value, quoted)), 1, null);
+                    case "name": return stringTest(Student::getName, op, value);
+                    case "class": case "classname": return stringTest(Student::getClassName, op, value);
+                    case "phone": return stringTest(Student::getPhone, op, value);
+                    case "email": return stringTest(Student::getEmail, op, value);
+                    default:
+                        pos -= 3;
+                        throw error("Unknown field '" + field + "'");
+                }
+            }
+
+            private double number(String field, String value, boolean quoted) {
+                try {
+                    if (!quoted) return Double.parseDouble(value);
+                } catch (NumberFormatException ignored) {
+                }
+                pos--;
+                throw error("'" + field + "' compares with a number, not '" + value + "'");
+            }
+
+            // One specialised lambda per operator keeps the comparison unboxed and branch-free per row
+            private java.util.function.Predicate<Student> intTest(String op, int v) {
+                switch (op) {
+                    case "=": return s -> s.getRollNo() == v;
+                    case "!=": return s -> s.getRollNo() != v;
+                    case "<": return s -> s.getRollNo() < v;
+                    case "<=": return s -> s.getRollNo() <= v;
+                    case ">": return s -> s.getRollNo() > v;
+                    case ">=": return s -> s.getRollNo() >= v;
+                    default: throw badOperator(op, "roll");
+                }
+            }
+
+            private java.util.function.Predicate<Student> doubleTest(String op, double v) {
+                switch (op) {
+                    case "=": return s -> s.getMarks() == v;
+                    case "!=": return s -> s.getMarks() != v;
+                    case "<": return s -> s.getMarks() < v;
+                    case "<=": return s -> s.getMarks() <= v;
+                    case ">": return s -> s.getMarks() > v;
+                    case ">=": return s -> s.getMarks() >= v;
+                    default: throw badOperator(op, "marks");
+                }
+            }
+
+            // regionMatches compares in place, so no lower-cased copy is made per row
+            private Node stringTest(java.util.function.Function<Student, String> field, String op, String v) {
+                int n = v.length();
+                switch (op.toLowerCase()) {
+                    case "=": return new Node(s -> { String f = field.apply(s); return f != null && f.equalsIgnoreCase(v); }, 2, null);
+                    case "!=": return new Node(s -> { String f = field.apply(s); return f == null || !f.equalsIgnoreCase(v); }, 2, null);
+                    case "startswith":
+                        return new Node(s -> { String f = field.apply(s); return f != null && f.regionMatches(true, 0, v, 0, n); }, 3, null);
+                    case "endswith":
+                        return new Node(s -> {
+                            String f = field.apply(s);
+                            return f != null && f.length() >= n && f.regionMatches(true, f.length() - n, v, 0, n);
+                        }, 3, null);
+                    case "contains":
+                        return new Node(s -> {
+                            String f = field.apply(s);
+                            if (f == null) return false;
+                            for (int i = 0, last = f.length() - n; i <= last; i++) {
+                                if (f.regionMatches(true, i, v, 0, n)) return true;
+                            }
+                            return false;
+                        }, 4, null);
+                    default: throw badOperator(op, "text");
+                }
+            }
+
+            private IllegalArgumentException badOperator(String op, String kind) {
+                pos -= 2;
+                return error("Operator '" + op + "' does not apply to " + kind);
+            }
+        }
+    }
+
     // ---------- Service (in-memory store + validation + stats) ----------
-    public static class StudentService {
+    public static class StudentService implements StudentStore {
         private final Map<Integer, Student> byRoll = new LinkedHashMap<>();
+        private final ChangeBus changes = new ChangeBus();
+        private final List<MutationListener> mutationListeners = new CopyOnWriteArrayList<>();
+        private final ChangeLog changeLog;
+        private long version = 0;
+        // Identifies this run's version sequence; versions restart at 0 in every process
+        private final long logId = new Random().nextLong() | 1L;
+        private MarksIndex marksIndex = new MarksIndex();
+        private final Map<String, MarksIndex> classIndex = new HashMap<>();
+        private MarksHistory history = new MarksHistory();
+        private long historyVersion = 0;
+
+        public StudentService() {
+            this(10_000);
+        }
+
+        public StudentService(int changeLogCapacity) {
+            this.changeLog = new ChangeLog(changeLogCapacity);
+        }
+
+        public void addChangeListener(StudentChangeListener l) { changes.addListener(l); }
+        public void removeChangeListener(StudentChangeListener l) { changes.removeListener(l); }
+        public void addMutationListener(MutationListener l) { mutationListeners.add(l); }
+        public void removeMutationListener(MutationListener l) { mutationListeners.remove(l); }
+
+        public synchronized boolean exists(int rollNo) {
+            return byRoll.containsKey(rollNo);
+        }
+
+        public synchronized void add(Student s) {
+            if (exists(s.getRollNo())) {
+                throw new IllegalArgumentException("Roll No already exists: " + s.getRollNo());
+            }
+            validate(s);
+            putStudent(s);
+            publish(StudentChange.inserted(s));
+        }
+
+        public synchronized void update(int originalRoll, Student updated) {
+            if (!exists(originalRoll)) throw new IllegalArgumentException("Original roll not found.");
+            if (updated.getRollNo() != originalRoll && exists(updated.getRollNo())) {
+                throw new IllegalArgumentException("New Roll No already exists: " + updated.getRollNo());
+            }
+            validate(updated);
+            // If roll changes, remove old key
+            if (updated.getRollNo() != originalRoll) {
+                removeStudent(originalRoll);
+                history.rekey(originalRoll, updated.getRollNo());
+            }
+            putStudent(updated);
+            publish(StudentChange.updated(originalRoll, updated));
+        }
+
+        public synchronized void delete(int rollNo) {
+            if (removeStudent(rollNo) != null) {
+                history.forget(rollNo);
+                publish(StudentChange.deleted(rollNo));
+            }
+        }
+
+        public synchronized List<Student> list() {
+            return new ArrayList<>(byRoll.values());
+        }
+
+        public synchronized Student get(int rollNo) {
+            return byRoll.get(rollNo);
+        }
+
+        // Batch roster lookup for check-in ingestion: classes[i] is null when rolls[i] is not enrolled.
+        public synchronized void classesOf(int[] rolls, int count, String[] classes) {
+            for (int i = 0; i < count; i++) {
+                Student s = byRoll.get(rolls[i]);
+                classes[i] = s == null ? null : s.getClassName();
+            }
+        }
+
+        public synchronized void clear() {
+            if (byRoll.isEmpty()) return;
+            clearStudents();
+            history.forgetAll();
+            publish(StudentChange.bulk(new ArrayList<>()));
+        }
+
+        // Adds a batch of new students; nothing is added if any of them is invalid or already present.
+        public synchronized void addAll(Collection<Student> students) {
+            Set<Integer> seen = new HashSet<>();
+            for (Student s : students) {
+                if (exists(s.getRollNo()) || !seen.add(s.getRollNo())) {
+                    throw new IllegalArgumentException("Roll No already exists: " + s.getRollNo());
+                }
+                validate(s);
+            }
+            for (Student s : students) {
+                putStudent(s);
+                publish(StudentChange.inserted(s));
+            }
+        }
+
+        // Replaces the whole roster in one step (e.g. CSV reload); nothing changes if any record is invalid.
+        public synchronized void replaceAll(Collection<Student> students) {
+            Map<Integer, Student> next = new LinkedHashMap<>();
+            for (Student s : students) {
+                validate(s);
+                if (next.put(s.getRollNo(), s) != null) {
+                    throw new IllegalArgumentException("Roll No already exists: " + s.getRollNo());
+                }
+            }
+            for (Student s : byRoll.values()) if (!next.containsKey(s.getRollNo())) history.forget(s.getRollNo());
+            clearStudents();
+            for (Student s : next.values()) putStudent(s);
+            publish(StudentChange.bulk(new ArrayList<>(byRoll.values())));
+        }
+
+        // Swaps in the roster and exam history of a service staged off to the side (e.g. a validated reload)
+        // in one step. The staged service hands its history over and must not be used afterwards.
+        public synchronized void replaceWith(StudentService staged) {
+            List<Student> students;
+            MarksHistory stagedHistory;
+            synchronized (staged) {
+                students = staged.list();
+                stagedHistory = staged.history;
+            }
+            replaceAll(students);
+            history = stagedHistory;
+            historyVersion++;
+        }
+
+        // Applies a change streamed from a replication primary; the primary already validated it.
+        synchronized void applyReplicated(StudentChange c) {
+            switch (c.getKind()) {
+                case INSERT:
+                    putStudent(c.getStudent());
+                    break;
+                case UPDATE:
+                    if (c.getPreviousRollNo() != c.getRollNo()) removeStudent(c.getPreviousRollNo());
+                    putStudent(c.getStudent());
+                    break;
+                case DELETE:
+                    removeStudent(c.getRollNo());
+                    break;
+                case BULK:
+                    clearStudents();
+                    for (Student s : c.getRoster()) putStudent(s);
+                    break;
+            }
+            publish(c);
+        }
+
+        // Every write to byRoll goes through these three so the marks indexes stay in step.
+        private void putStudent(Student s) {
+            Student old = byRoll.put(s.getRollNo(), s);
+            if (old != null) unindex(old);
+            marksIndex.add(s);
+            classIndex.computeIfAbsent(s.getClassName(), k -> new MarksIndex()).add(s);
+        }
+
+        private Student removeStudent(int rollNo) {
+            Student old = byRoll.remove(rollNo);
+            if (old != null) unindex(old);
+            return old;
+        }
+
+        private void clearStudents() {
+            byRoll.clear();
+            marksIndex = new MarksIndex();
+            classIndex.clear();
+        }
+
+        private void unindex(Student s) {
+            marksIndex.remove(s);
+            MarksIndex cls = classIndex.get(s.getClassName());
+            if (cls != null) {
+                cls.remove(s);
+                if (cls.size() == 0) classIndex.remove(s.getClassName());
+            }
+        }
+
+        // ---- Rank / percentile (O(log n) via MarksIndex) ----
+        // Competition rank: 1 + number of students with strictly higher marks; 0 if the roll is unknown.
+        public synchronized int rankOf(int rollNo) {
+            Student s = byRoll.get(rollNo);
+            return s == null ? 0 : marksIndex.rankOf(s.getMarks());
+        }
+
+        public synchronized int classRankOf(int rollNo) {
+            Student s = byRoll.get(rollNo);
+            return s == null ? 0 : classIndex.get(s.getClassName()).rankOf(s.getMarks());
+        }
+
+        // Percentage of the roster scoring at or below this student.
+        public synchronized double percentileOf(int rollNo) {
+            Student s = byRoll.get(rollNo);
+            return s == null ? 0 : marksIndex.percentileOf(s.getMarks());
+        }
+
+        // k-th best student (1-based); ties are broken by ascending roll.
+        public synchronized Student kthBest(int k) {
+            int roll = marksIndex.kthBestRoll(k);
+            return roll < 0 ? null : byRoll.get(roll);
+        }
+
+        // Lowest marks such that at least `percentile`% of the roster scores at or below it.
+        public synchronized double percentileCutoff(double percentile) {
+            return marksIndex.cutoff(percentile);
+        }
+
+        public synchronized List<Student> topN(int n) {
+            return resolve(marksIndex.topRolls(n));
+        }
+
+        public synchronized List<Student> topN(String className, int n) {
+            MarksIndex cls = classIndex.get(className);
+            return cls == null ? new ArrayList<>() : resolve(cls.topRolls(n));
+        }
+
+        // ---- Marks history across exams and terms ----
+        public synchronized void addExam(String name, String term) {
+            if (name == null || name.trim().isEmpty()) throw new IllegalArgumentException("Exam name required.");
+            history.addExam(name.trim(), term == null ? "" : term.trim());
+            historyVersion++;
+        }
+
+        public synchronized void recordMarks(int rollNo, String exam, double marks) {
+            if (!byRoll.containsKey(rollNo)) throw new IllegalArgumentException("Roll not found: " + rollNo);
+            history.record(rollNo, exam, marks);
+            historyVersion++;
+        }
+
+        // Bumped by every exam history write; history changes are not part of the roster change log.
+        public synchronized long getHistoryVersion() { return historyVersion; }
+
+        public synchronized List<String> exams() { return new ArrayList<>(history.examNames()); }
+        public synchronized double[] marksHistory(int rollNo) { return history.history(rollNo); }
+        public synchronized double latestMarks(int rollNo) { return history.latest(rollNo); }
+        public synchronized double bestMarks(int rollNo) { return history.best(rollNo); }
+        public synchronized double marksTrend(int rollNo) { return history.trend(rollNo); }
+        public synchronized double termAverage(int rollNo, String term) { return history.termAverage(rollNo, term); }
+        public synchronized ShardStats examStats(String exam) { return history.examStats(exam); }
+        public synchronized double examPassRate(String exam, double passThreshold) { return history.examPassRate(exam, passThreshold); }
+        public synchronized void saveHistory(Path file) throws IOException { history.save(file); }
+
+        public synchronized void loadHistory(Path file) throws IOException {
+            history.load(file, byRoll::containsKey);
+            historyVersion++;
+        }
+
+        private List<Student> resolve(List<Integer> rolls) {
+            List<Student> out = new ArrayList<>(rolls.size());
+            for (int roll : rolls) out.add(byRoll.get(roll));
+            return out;
+        }
+
+        private void publish(StudentChange c) {
+            VersionedChange vc = new VersionedChange(++version, c);
+            changeLog.append(vc);
+            changes.publish(c);
+            for (MutationListener l : mutationListeners) l.mutated(vc);
+        }
+
+        // Bumped by one on every mutation, starting at 0 for each new service.
+        public synchronized long getVersion() { return version; }
+
+        // Versions are only comparable between callers that saw the same log id.
+        public long getLogId() { return logId; }
+
+        public synchronized List<VersionedChange> changesSince(long sinceVersion) {
+            return changeLog.since(sinceVersion, version);
+        }
+
+        // Case-insensitive substring match over every column, same as the table's search box.
+        public synchronized List<Student> search(String text) {
+            String needle = text.trim().toLowerCase();
+            List<Student> out = new ArrayList<>();
+            for (Student s : byRoll.values()) if (matches(s, needle)) out.add(s);
+            return out;
+        }
+
+        // Evaluated on a snapshot outside the lock, so a large query does not hold up writers.
+        public List<Student> query(StudentFilter filter) {
+            Student[] snapshot;
+            synchronized (this) {
+                snapshot = byRoll.values().toArray(new Student[0]);
+            }
+            return filter.filter(snapshot);
+        }
+
+        public List<Student> query(String filter) {
+            return query(StudentFilter.compile(filter));
+        }
+
+        static boolean matches(Student s, String needle) {
+            if (needle.isEmpty()) return true;
+            return String.valueOf(s.getRollNo()).contains(needle)
+                    || contains(s.getName(), needle)
+                    || contains(s.getClassName(), needle)
+                    || String.valueOf(s.getMarks()).contains(needle)
+                    || contains(s.getPhone(), needle)
+                    || contains(s.getEmail(), needle);
+        }
+
+        private static boolean contains(String value, String needle) {
+            return value != null && value.toLowerCase().contains(needle);
+        }
+
+        static void validate(Student s) {
+            if (s.getName() == null || s.getName().trim().isEmpty()) throw new IllegalArgumentException("Name required.");
+            if (s.getRollNo() <= 0) throw new IllegalArgumentException("Roll No must be > 0.");
+            if (s.getClassName() == null || s.getClassName().trim().isEmpty()) throw new IllegalArgumentException("Class required.");
+            if (s.getMarks() < 0 || s.getMarks() > 100) throw new IllegalArgumentException("Marks must be between 0 and 100.");
+            if (s.getEmail() != null && !s.getEmail().trim().isEmpty() && !s.getEmail().contains("@"))
+                throw new IllegalArgumentException("Invalid email.");
+            if (s.getPhone() != null && !s.getPhone().trim().isEmpty()) {
+                String p = s.getPhone().replaceAll("\\D", "");
+                if (p.length() < 7) throw new IllegalArgumentException("Invalid phone.");
+            }
+        }
+
+        // ---- Stats ----
+        public synchronized int totalCount() { return byRoll.size(); }
+
+        // Heap held by the rank indexes and exam history, for callers budgeting memory per service
+        public synchronized long indexBytes() {
+            long total = marksIndex.estimateBytes() + history.estimateBytes();
+            for (MarksIndex cls : classIndex.values()) total += cls.estimateBytes();
+            return total;
+        }
+        public synchronized double averageMarks() {
+            if (byRoll.isEmpty()) return 0;
+            double sum = 0;
+            for (Student s : byRoll.values()) sum += s.getMarks();
+            return sum / byRoll.size();
+        }
+        public synchronized double highestMarks() {
+            double max = 0;
+            for (Student s : byRoll.values()) max = Math.max(max, s.getMarks());
+            return max;
+        }
+        public synchronized double lowestMarks() {
+            if (byRoll.isEmpty()) return 0;
+            double min = 101;
+            for (Student s : byRoll.values()) min = Math.min(min, s.getMarks());
+            return (min == 101) ? 0 : min;
+        }
+        public synchronized double passRate(double passThreshold) {
+            if (byRoll.isEmpty()) return 0;
+            int pass = 0;
+            for (Student s : byRoll.values()) if (s.getMarks() >= passThreshold) pass++;
+            return (pass * 100.0) / byRoll.size();
+        }
+    }
+
+    // ---------- Marks Index (Fenwick tree over fixed-point marks) ----------
+    // Counts students per hundredth of a mark (0.00..100.00 -> 10001 buckets), so rank, k-th best and
+    // percentile answers cost O(log 10001) whatever the roster size. Rolls are kept per occupied
+    // bucket to turn a bucket back into students. Not thread-safe: guarded by the owning service.
+    public static class MarksIndex {
+        static final int BUCKETS = 10001;
+        // Below this many students counts come straight from the bucket map; the ~40 KB Fenwick array is
+        // built once an index grows past it (and dropped again at half), so small classes stay small.
+        static final int DENSE_THRESHOLD = 256;
+
+        private int[] tree; // 1-based Fenwick array, null while the index is small
+        private final TreeMap<Integer, TreeSet<Integer>> rollsByBucket = new TreeMap<>();
+        private int size = 0;
+
+        static int bucket(double marks) {
+            return Math.max(0, Math.min(BUCKETS - 1, (int) Math.round(marks * 100)));
+        }
+
+        public int size() { return size; }
+
+        // Rough heap cost: the Fenwick array (if built) plus a map entry and boxed roll per student
+        long estimateBytes() {
+            return (tree == null ? 0 : 4L * tree.length) + 96L * rollsByBucket.size() + 56L * size + 64;
+        }
+
+        void add(Student s) {
+            int b = bucket(s.getMarks());
+            rollsByBucket.computeIfAbsent(b, k -> new TreeSet<>()).add(s.getRollNo());
+            size++;
+            if (tree != null) bump(b, 1);
+            else if (size >= DENSE_THRESHOLD) buildTree();
+        }
+
+        void remove(Student s) {
+            int b = bucket(s.getMarks());
+            TreeSet<Integer> rolls = rollsByBucket.get(b);
+            if (rolls == null || !rolls.remove(s.getRollNo())) return;
+            if (rolls.isEmpty()) rollsByBucket.remove(b);
+            size--;
+            if (tree != null) {
+                if (size < DENSE_THRESHOLD / 2) tree = null;
+                else bump(b, -1);
+            }
+        }
+
+        int rankOf(double marks) {
+            return 1 + size - countAtOrBelow(bucket(marks));
+        }
+
+        double percentileOf(double marks) {
+            return size == 0 ? 0 : countAtOrBelow(bucket(marks)) * 100.0 / size;
+        }
+
+        int kthBestRoll(int k) {
+            if (k < 1 || k > size) return -1;
+            int b = kthSmallestBucket(size - k + 1);
+            int offset = k - (size - countAtOrBelow(b)) - 1; // position among the ties in bucket b
+            Iterator<Integer> it = rollsByBucket.get(b).iterator();
+            while (offset-- > 0) it.next();
+            return it.next();
+        }
+
+        double cutoff(double percentile) {
+            if (size == 0) return 0;
+            int k = (int) Math.ceil(Math.max(0, Math.min(100, percentile)) / 100.0 * size);
+            return kthSmallestBucket(Math.max(1, k)) / 100.0;
+        }
+
+        List<Integer> topRolls(int n) {
+            List<Integer> out = new ArrayList<>(Math.min(n, size));
+            for (TreeSet<Integer> rolls : rollsByBucket.descendingMap().values()) {
+                for (int roll : rolls) {
+                    if (out.size() == n) return out;
+                    out.add(roll);
+                }
+            }
+            return out;
+        }
+
+        private void buildTree() {
+            tree = new int[BUCKETS + 1];
+            for (Map.Entry<Integer, TreeSet<Integer>> e : rollsByBucket.entrySet()) bump(e.getKey(), e.getValue().size());
+        }
+
+        private void bump(int bucket, int delta) {
+            for (int i = bucket + 1; i <= BUCKETS; i += i & -i) tree[i] += delta;
+        }
+
+        private int countAtOrBelow(int bucket) {
+            int sum = 0;
+            if (tree == null) {
+                for (TreeSet<Integer> rolls : rollsByBucket.headMap(bucket, true).values()) sum += rolls.size();
+                return sum;
+            }
+            for (int i = bucket + 1; i > 0; i -= i & -i) sum += tree[i];
+            return sum;
+        }
+
+        // Smallest bucket whose cumulative count reaches k (1 <= k <= size).
+        private int kthSmallestBucket(int k) {
+            if (tree == null) {
+                for (Map.Entry<Integer, TreeSet<Integer>> e : rollsByBucket.entrySet()) {
+                    k -= e.getValue().size();
+                    if (k <= 0) return e.getKey();
+                }
+                return rollsByBucket.lastKey();
+            }
+            int pos = 0;
+            for (int step = Integer.highestOneBit(BUCKETS); step > 0; step >>= 1) {
+                int next = pos + step;
+                if (next <= BUCKETS && tree[next] < k) {
+                    pos = next;
+                    k -= tree[next];
+                }
+            }
+            return pos; // 1-based position pos + 1 is bucket pos
+        }
+    }
+
+    // ---------- Primitive int -> int map (open addressing, no boxing) ----------
+    // Keys must be non-zero (roll numbers are > 0); get() returns `missing` for absent keys.
+    public static class IntIntMap {
+        private int[] keys;
+        private int[] values;
+        private int size = 0;
+
+        public IntIntMap(int expected) {
+            int cap = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+            keys = new int[cap];
+            values = new int[cap];
+        }
+
+        public int size() { return size; }
+
+        long estimateBytes() { return 8L * keys.length + 32; }
+
+        public int get(int key, int missing) {
+            int mask = keys.length - 1;
+            for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+                if (keys[i] == key) return values[i];
+                if (keys[i] == 0) return missing;
+            }
+        }
+
+        public void put(int key, int value) {
+            if (key == 0) throw new IllegalArgumentException("Key 0 is reserved.");
+            if ((size + 1) * 2 > keys.length) grow();
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            while (keys[i] != 0 && keys[i] != key) i = (i + 1) & mask;
+            if (keys[i] == 0) size++;
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        public int remove(int key, int missing) {
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            while (keys[i] != key) {
+                if (keys[i] == 0) return missing;
+                i = (i + 1) & mask;
+            }
+            int old = values[i];
+            size--;
+            // Backward-shift deletion keeps probe chains intact without tombstones
+            for (int gap = i, j = (i + 1) & mask; ; j = (j + 1) & mask) {
+                if (keys[j] == 0) {
+                    keys[gap] = 0;
+                    return old;
+                }
+                int home = mix(keys[j]) & mask;
+                if (((j - home) & mask) >= ((j - gap) & mask)) {
+                    keys[gap] = keys[j];
+                    values[gap] = values[j];
+                    gap = j;
+                }
+            }
+        }
+
+        public void clear() {
+            Arrays.fill(keys, 0);
+            size = 0;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys, oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) if (oldKeys[i] != 0) put(oldKeys[i], oldValues[i]);
+        }
+
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    // ---------- Marks History (per-exam columns of fixed-point marks) ----------
+    // Exams are registered in order, each with a term. Each exam is one short[] column of
+    // hundredths of a mark indexed by a per-student slot (NONE = not sat), so 20 exams x 1M
+    // students cost about 40 MB plus the roll -> slot map. Slots of deleted students are reused.
+    // Not thread-safe: guarded by the owning service.
+    public static class MarksHistory {
+        static final short NONE = -1;
+
+        private final List<String> examNames = new ArrayList<>();
+        private final List<String> examTerms = new ArrayList<>();
+        private final Map<String, Integer> examIndex = new HashMap<>();
+        private final List<short[]> columns = new ArrayList<>();
+        private final IntIntMap slotOfRoll = new IntIntMap(1024);
+        private int[] freeSlots = new int[16];
+        private int freeCount = 0;
+        private int slotCount = 0;
+        private int capacity = 1024;
+
+        public int examCount() { return examNames.size(); }
+
+        // Rough heap cost: one short per slot per exam, the slot map and the exam names
+        long estimateBytes() {
+            return 2L * capacity * columns.size() + slotOfRoll.estimateBytes() + 4L * freeSlots.length + 128L * examNames.size();
+        }
+        public List<String> examNames() { return Collections.unmodifiableList(examNames); }
+        public String termOf(String exam) { return examTerms.get(exam(exam)); }
+
+        // Registers an exam (no-op if it exists) and returns its column index.
+        public int addExam(String name, String term) {
+            Integer existing = examIndex.get(name);
+            if (existing != null) return existing;
+            short[] col = new short[capacity];
+            Arrays.fill(col, NONE);
+            columns.add(col);
+            examNames.add(name);
+            examTerms.add(term);
+            examIndex.put(name, columns.size() - 1);
+            return columns.size() - 1;
+        }
+
+        public void record(int rollNo, String exam, double marks) {
+            if (marks < 0 || marks > 100) throw new IllegalArgumentException("Marks must be between 0 and 100.");
+            int col = exam(exam);
+            int slot = slotFor(rollNo); // may grow the columns
+            columns.get(col)[slot] = (short) Math.round(marks * 100);
+        }
+
+        // Marks per registered exam, NaN where the student has no result.
+        public double[] history(int rollNo) {
+            double[] out = new double[columns.size()];
+            int slot = slotOfRoll.get(rollNo, -1);
+            for (int c = 0; c < out.length; c++) {
+                short v = slot < 0 ? NONE : columns.get(c)[slot];
+                out[c] = v == NONE ? Double.NaN : v / 100.0;
+            }
+            return out;
+        }
+
+        public double latest(int rollNo) {
+            int slot = slotOfRoll.get(rollNo, -1);
+            if (slot < 0) return Double.NaN;
+            for (int c = columns.size() - 1; c >= 0; c--) {
+                short v = columns.get(c)[slot];
+                if (v != NONE) return v / 100.0;
+            }
+            return Double.NaN;
+        }
+
+        public double best(int rollNo) {
+            int slot = slotOfRoll.get(rollNo, -1);
+            int best = NONE;
+            if (slot >= 0) for (short[] col : columns) best = Math.max(best, col[slot]);
+            return best == NONE ? Double.NaN : best / 100.0;
+        }
+
+        public double termAverage(int rollNo, String term) {
+            int slot = slotOfRoll.get(rollNo, -1);
+            if (slot < 0) return Double.NaN;
+            long sum = 0;
+            int n = 0;
+            for (int c = 0; c < columns.size(); c++) {
+                short v = columns.get(c)[slot];
+                if (v != NONE && examTerms.get(c).equals(term)) { sum += v; n++; }
+            }
+            return n == 0 ? Double.NaN : sum / (n * 100.0);
+        }
+
+        // Least-squares slope in marks per exam over the exams the student sat; NaN with fewer than two.
+        public double trend(int rollNo) {
+            int slot = slotOfRoll.get(rollNo, -1);
+            if (slot < 0) return Double.NaN;
+            double n = 0, sx = 0, sy = 0, sxx = 0, sxy = 0;
+            for (int c = 0; c < columns.size(); c++) {
+                short v = columns.get(c)[slot];
+                if (v == NONE) continue;
+                double y = v / 100.0;
+                n++; sx += c; sy += y; sxx += (double) c * c; sxy += c * y;
+            }
+            double den = n * sxx - sx * sx;
+            return n < 2 || den == 0 ? Double.NaN : (n * sxy - sx * sy) / den;
+        }
+
+        // Count/sum/min/max of one exam column: the roster stats, per exam.
+        public ShardStats examStats(String exam) {
+            short[] col = columns.get(exam(exam));
+            int count = 0, lo = Integer.MAX_VALUE, hi = Integer.MIN_VALUE;
+            long sum = 0;
+            for (int i = 0; i < slotCount; i++) {
+                short v = col[i];
+                if (v == NONE) continue;
+                count++;
+                sum += v;
+                if (v < lo) lo = v;
+                if (v > hi) hi = v;
+            }
+            return count == 0 ? ShardStats.EMPTY : new ShardStats(count, sum / 100.0, lo / 100.0, hi / 100.0);
+        }
+
+        public double examPassRate(String exam, double passThreshold) {
+            short[] col = columns.get(exam(exam));
+            int threshold = (int) Math.ceil(passThreshold * 100 - 1e-9);
+            int count = 0, pass = 0;
+            for (int i = 0; i < slotCount; i++) {
+                short v = col[i];
+                if (v == NONE) continue;
+                count++;
+                if (v >= threshold) pass++;
+            }
+            return count == 0 ? 0 : pass * 100.0 / count;
+        }
+
+        void rekey(int oldRoll, int newRoll) {
+            int slot = slotOfRoll.remove(oldRoll, -1);
+            if (slot >= 0) slotOfRoll.put(newRoll, slot);
+        }
+
+        void forget(int rollNo) {
+            int slot = slotOfRoll.remove(rollNo, -1);
+            if (slot < 0) return;
+            for (short[] col : columns) col[slot] = NONE;
+            if (freeCount == freeSlots.length) freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+            freeSlots[freeCount++] = slot;
+        }
+
+        void forgetAll() {
+            slotOfRoll.clear();
+            for (short[] col : columns) Arrays.fill(col, NONE);
+            slotCount = 0;
+            freeCount = 0;
+        }
+
+        // ---- Persistence (long format: rollNo,exam,term,marks) ----
+        public void save(Path file) throws IOException {
+            try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                w.write("rollNo,exam,term,marks\n");
+                for (int c = 0; c < columns.size(); c++) {
+                    String prefix = "," + CSVStorage.escape(examNames.get(c)) + "," + CSVStorage.escape(examTerms.get(c)) + ",";
+                    short[] col = columns.get(c);
+                    for (int i = 0; i < slotOfRoll.keys.length; i++) {
+                        int roll = slotOfRoll.keys[i];
+                        if (roll == 0) continue;
+                        short v = col[slotOfRoll.values[i]];
+                        if (v != NONE) w.write(roll + prefix + (v / 100) + "." + String.format("%02d", v % 100) + "\n");
+                    }
+                }
+            }
+        }
+
+        // Replaces the whole history with the file's (no file: empty). Rows for rolls the roster does not
+        // have are skipped; a malformed row fails with file:line and leaves the current history untouched.
+        public void load(Path file, java.util.function.IntPredicate onRoster) throws IOException {
+            List<String[]> rows = new ArrayList<>();
+            if (Files.exists(file)) {
+                try (BufferedReader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    r.readLine(); // header
+                    int lineNo = 1;
+                    for (String line; (line = r.readLine()) != null; ) {
+                        lineNo++;
+                        if (line.trim().isEmpty()) continue;
+                        String[] parts = CSVStorage.parseCSV(line);
+                        try {
+                            if (parts.length < 4) throw new IllegalArgumentException("expected rollNo,exam,term,marks");
+                            int roll = Integer.parseInt(parts[0].trim());
+                            double marks = Double.parseDouble(parts[3].trim());
+                            if (marks < 0 || marks > 100) throw new IllegalArgumentException("Marks must be between 0 and 100.");
+                            if (onRoster.test(roll)) rows.add(parts);
+                        } catch (IllegalArgumentException ex) {
+                            throw new IllegalArgumentException(file + ":" + lineNo + ": " + ex.getMessage());
+                        }
+                    }
+                }
+            }
+            forgetAll();
+            examNames.clear();
+            examTerms.clear();
+            examIndex.clear();
+            columns.clear();
+            for (String[] parts : rows) {
+                String exam = CSVStorage.unescape(parts[1]);
+                addExam(exam, CSVStorage.unescape(parts[2]));
+                record(Integer.parseInt(parts[0].trim()), exam, Double.parseDouble(parts[3].trim()));
+            }
+        }
+
+        private int exam(String name) {
+            Integer idx = examIndex.get(name);
+            if (idx == null) throw new IllegalArgumentException("Unknown exam: " + name);
+            return idx;
+        }
+
+        private int slotFor(int rollNo) {
+            int slot = slotOfRoll.get(rollNo, -1);
+            if (slot >= 0) return slot;
+            if (freeCount > 0) {
+                slot = freeSlots[--freeCount];
+            } else {
+                if (slotCount == capacity) {
+                    capacity *= 2;
+                    for (int c = 0; c < columns.size(); c++) {
+                        short[] grown = Arrays.copyOf(columns.get(c), capacity);
+                        Arrays.fill(grown, slotCount, capacity, NONE);
+                        columns.set(c, grown);
+                    }
+                }
+                slot = slotCount++;
+            }
+            slotOfRoll.put(rollNo, slot);
+            return slot;
+        }
+    }
+
+    // ---------- Partitioned Service (per-shard locks + fork-join fan-out) ----------
+    // Shards the roster by class or by a hash of the roll. Writes lock only their shard; roster-wide
+    // writes (clear/replaceAll) take the write side of rosterLock. Roll uniqueness is enforced
+    // across shards through shardOfRoll, and roster-wide queries fan out over a ForkJoinPool.
+    public static class PartitionedStudentService implements StudentStore {
+        public enum Partitioning { BY_CLASS, BY_ROLL_HASH }
+
+        private final Partitioning partitioning;
+        private final int rollShards;
+        private final ConcurrentHashMap<Object, Shard> shards = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<Integer, Shard> shardOfRoll = new ConcurrentHashMap<>();
+        private final ReentrantReadWriteLock rosterLock = new ReentrantReadWriteLock();
+        private final ForkJoinPool pool;
+        // Changes are stamped and queued in the writer's shard outbox while its lock is held (a lock-free
+        // append, so shards never contend). Stamps have no gaps, so the bus releases changes strictly in
+        // stamp order and holds back everything after a stamp whose writer has not queued it yet; that
+        // keeps per-roll order even when a roll moves between shards mid-drain.
+        private final AtomicLong changeSeq = new AtomicLong();
+        private final ConcurrentLinkedQueue<VersionedChange> rosterOutbox = new ConcurrentLinkedQueue<>();
+        private final ChangeBus changes = new ChangeBus(this::drainOutboxes);
+        // EDT-only: drained changes waiting behind a missing stamp, and the last stamp released
+        private final PriorityQueue<VersionedChange> heldBack = new PriorityQueue<>(Comparator.comparingLong(VersionedChange::getVersion));
+        private long released;
+        private int nextShardId = 0;
+
+        public PartitionedStudentService(Partitioning partitioning, int rollShards, int parallelism) {
+            if (rollShards <= 0) throw new IllegalArgumentException("Shard count must be > 0.");
+            this.partitioning = partitioning;
+            this.rollShards = rollShards;
+            this.pool = new ForkJoinPool(parallelism);
+        }
+
+        public static PartitionedStudentService byClass() {
+            int cores = Runtime.getRuntime().availableProcessors();
+            return new PartitionedStudentService(Partitioning.BY_CLASS, 1, cores);
+        }
+
+        public static PartitionedStudentService byRollHash(int shardCount) {
+            int cores = Runtime.getRuntime().availableProcessors();
+            return new PartitionedStudentService(Partitioning.BY_ROLL_HASH, shardCount, cores);
+        }
+
+        @Override public void addChangeListener(StudentChangeListener l) { changes.addListener(l); }
+        @Override public void removeChangeListener(StudentChangeListener l) { changes.removeListener(l); }
+
+        @Override
+        public boolean exists(int rollNo) {
+            return shardOfRoll.containsKey(rollNo);
+        }
+
+        @Override
+        public void add(Student s) {
+            rosterLock.readLock().lock();
+            try {
+                Shard target = shardFor(s);
+                if (shardOfRoll.putIfAbsent(s.getRollNo(), target) != null) {
+                    throw new IllegalArgumentException("Roll No already exists: " + s.getRollNo());
+                }
+                try {
+                    StudentService.validate(s);
+                } catch (IllegalArgumentException ex) {
+                    shardOfRoll.remove(s.getRollNo(), target);
+                    throw ex;
+                }
+                synchronized (target) {
+                    target.put(s);
+                    record(target.outbox, StudentChange.inserted(s));
+                }
+                changes.requestFlush();
+            } finally {
+                rosterLock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public void update(int originalRoll, Student updated) {
+            rosterLock.readLock().lock();
+            try {
+                if (!exists(originalRoll)) throw new IllegalArgumentException("Original roll not found.");
+                boolean rekey = updated.getRollNo() != originalRoll;
+                Shard target = shardFor(updated);
+                if (rekey && shardOfRoll.putIfAbsent(updated.getRollNo(), target) != null) {
+                    throw new IllegalArgumentException("New Roll No already exists: " + updated.getRollNo());
+                }
+                boolean done = false;
+                try {
+                    StudentService.validate(updated);
+                    // A concurrent update may move the student to another shard; chase it until stable.
+                    while (!done) {
+                        Shard source = shardOfRoll.get(originalRoll);
+                        if (source == null) throw new IllegalArgumentException("Original roll not found.");
+                        Shard first = source.id <= target.id ? source : target;
+                        Shard second = first == source ? target : source;
+                        synchronized (first) {
+                            synchronized (second) {
+                                // The roll may be reserved by an add (or re-key) that has not stored it yet
+                                if (shardOfRoll.get(originalRoll) != source || !source.contains(originalRoll)) continue;
+                                source.remove(originalRoll);
+                                target.put(updated);
+                                shardOfRoll.put(updated.getRollNo(), target);
+                                if (rekey) shardOfRoll.remove(originalRoll);
+                                record(target.outbox, StudentChange.updated(originalRoll, updated));
+                                done = true;
+                            }
+                        }
+                    }
+                    changes.requestFlush();
+                } finally {
+                    if (!done && rekey) shardOfRoll.remove(updated.getRollNo(), target);
+                }
+            } finally {
+                rosterLock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public void delete(int rollNo) {
+            rosterLock.readLock().lock();
+            try {
+                while (true) {
+                    Shard shard = shardOfRoll.get(rollNo);
+                    if (shard == null) return;
+                    synchronized (shard) {
+                        if (shardOfRoll.get(rollNo) != shard) continue;
+                        if (shard.remove(rollNo) == null) return;
+                        shardOfRoll.remove(rollNo, shard);
+                        record(shard.outbox, StudentChange.deleted(rollNo));
+                    }
+                    changes.requestFlush();
+                    return;
+                }
+            } finally {
+                rosterLock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public void clear() {
+            rosterLock.writeLock().lock();
+            try {
+                if (shardOfRoll.isEmpty()) return;
+                for (Shard shard : shards.values()) shard.clear();
+                shardOfRoll.clear();
+                record(rosterOutbox, StudentChange.bulk(new ArrayList<>()));
+                changes.requestFlush();
+            } finally {
+                rosterLock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public void replaceAll(Collection<Student> students) {
+            Set<Integer> seen = new HashSet<>();
+            for (Student s : students) {
+                StudentService.validate(s);
+                if (!seen.add(s.getRollNo())) {
+                    throw new IllegalArgumentException("Roll No already exists: " + s.getRollNo());
+                }
+            }
+            rosterLock.writeLock().lock();
+            try {
+                for (Shard shard : shards.values()) shard.clear();
+                shardOfRoll.clear();
+                for (Student s : students) {
+                    Shard target = shardFor(s);
+                    target.put(s);
+                    shardOfRoll.put(s.getRollNo(), target);
+                }
+                record(rosterOutbox, StudentChange.bulk(list()));
+                changes.requestFlush();
+            } finally {
+                rosterLock.writeLock().unlock();
+            }
+        }
+
+        private void record(Queue<VersionedChange> outbox, StudentChange change) {
+            if (!changes.hasListeners()) return;
+            outbox.add(new VersionedChange(changeSeq.incrementAndGet(), change));
+        }
+
+        // Runs on the EDT at flush time. A held-back change goes out with a later flush: the writer of the
+        // missing stamp requests one after queueing it.
+        private void drainOutboxes(List<StudentChange> batch) {
+            for (VersionedChange c; (c = rosterOutbox.poll()) != null; ) heldBack.add(c);
+            for (Shard shard : shards.values()) {
+                for (VersionedChange c; (c = shard.outbox.poll()) != null; ) heldBack.add(c);
+            }
+            while (!heldBack.isEmpty() && heldBack.peek().getVersion() == released + 1) {
+                batch.add(heldBack.poll().getChange());
+                released++;
+            }
+        }
+
+        // ---- Fan-out queries ----
+        @Override
+        public List<Student> list() {
+            List<Student> all = fanOut(shard -> shard.snapshot());
+            all.sort(Comparator.comparingInt(Student::getRollNo));
+            return all;
+        }
+
+        @Override
+        public List<Student> search(String text) {
+            String needle = text.trim().toLowerCase();
+            List<Student> hits = fanOut(shard -> shard.search(needle));
+            hits.sort(Comparator.comparingInt(Student::getRollNo));
+            return hits;
+        }
+
+        @Override
+        public List<Student> query(StudentFilter filter) {
+            List<Student> hits = fanOut(shard -> filter.filter(shard.snapshot()));
+            hits.sort(Comparator.comparingInt(Student::getRollNo));
+            return hits;
+        }
+
+        @Override public int totalCount() { return shardOfRoll.size(); }
+        @Override public double averageMarks() { return summary().average(); }
+        @Override public double highestMarks() { return summary().getHighest(); }
+        @Override public double lowestMarks() { return summary().getLowest(); }
+
+        @Override
+        public double passRate(double passThreshold) {
+            int[] counts = pool.submit(() -> shards.values().parallelStream()
+                    .map(shard -> shard.countPassing(passThreshold))
+                    .reduce(new int[2], (a, b) -> new int[]{a[0] + b[0], a[1] + b[1]})).join();
+            return counts[1] == 0 ? 0 : (counts[0] * 100.0) / counts[1];
+        }
+
+        // Merged stats of every shard; each shard keeps its own running totals.
+        public ShardStats summary() {
+            return pool.submit(() -> shards.values().parallelStream()
+                    .map(Shard::stats)
+                    .reduce(ShardStats.EMPTY, ShardStats::merge)).join();
+        }
+
+        // Per-shard stats keyed by class name (BY_CLASS) or shard index (BY_ROLL_HASH).
+        public Map<String, ShardStats> summaryByShard() {
+            Map<String, ShardStats> out = new TreeMap<>();
+            for (Map.Entry<Object, Shard> e : shards.entrySet()) out.put(String.valueOf(e.getKey()), e.getValue().stats());
+            return out;
+        }
+
+        public void shutdown() {
+            pool.shutdown();
+        }
+
+        private List<Student> fanOut(java.util.function.Function<Shard, List<Student>> perShard) {
+            return pool.submit(() -> shards.values().parallelStream()
+                    .map(perShard)
+                    .collect(ArrayList<Student>::new, ArrayList::addAll, ArrayList::addAll)).join();
+        }
+
+        private Shard shardFor(Student s) {
+            Object key = partitioning == Partitioning.BY_CLASS
+                    ? (s.getClassName() == null ? "" : s.getClassName().trim())
+                    : Math.floorMod(s.getRollNo() * 0x9E3779B9, rollShards);
+            Shard shard = shards.get(key);
+            return shard != null ? shard : shards.computeIfAbsent(key, k -> new Shard(newShardId()));
+        }
+
+        private synchronized int newShardId() {
+            return nextShardId++;
+        }
+
+        // One independent segment: its own monitor, map and running stats.
+        private static final class Shard {
+            final int id;
+            final ConcurrentLinkedQueue<VersionedChange> outbox = new ConcurrentLinkedQueue<>();
+            private final Map<Integer, Student> byRoll = new LinkedHashMap<>();
+            private final TreeMap<Double, Integer> marksCount = new TreeMap<>();
+            private double sum = 0;
+
+            Shard(int id) { this.id = id; }
+
+            synchronized void put(Student s) {
+                Student old = byRoll.put(s.getRollNo(), s);
+                if (old != null) untrack(old);
+                sum += s.getMarks();
+                marksCount.merge(s.getMarks(), 1, Integer::sum);
+            }
+
+            synchronized boolean contains(int rollNo) {
+                return byRoll.containsKey(rollNo);
+            }
+
+            synchronized Student remove(int rollNo) {
+                Student old = byRoll.remove(rollNo);
+                if (old != null) untrack(old);
+                return old;
+            }
+
+            synchronized void clear() {
+                byRoll.clear();
+                marksCount.clear();
+                sum = 0;
+            }
+
+            synchronized List<Student> snapshot() {
+                return new ArrayList<>(byRoll.values());
+            }
+
+            synchronized List<Student> search(String needle) {
+                List<Student> out = new ArrayList<>();
+                for (Student s : byRoll.values()) if (StudentService.matches(s, needle)) out.add(s);
+                return out;
+            }
+
+            synchronized int[] countPassing(double threshold) {
+                int pass = 0;
+                for (int c : marksCount.tailMap(threshold, true).values()) pass += c;
+                return new int[]{pass, byRoll.size()};
+            }
+
+            synchronized ShardStats stats() {
+                if (byRoll.isEmpty()) return ShardStats.EMPTY;
+                return new ShardStats(byRoll.size(), sum, marksCount.firstKey(), marksCount.lastKey());
+            }
+
+            private void untrack(Student s) {
+                sum -= s.getMarks();
+                marksCount.computeIfPresent(s.getMarks(), (k, c) -> c == 1 ? null : c - 1);
+            }
+        }
+    }
+
+    // Immutable count/sum/min/max of marks; merges associatively so shards can be combined in any order.
+    public static class ShardStats {
+        static final ShardStats EMPTY = new ShardStats(0, 0, 0, 0);
+
+        private final int count;
+        private final double sum;
+        private final double lowest;
+        private final double highest;
+
+        public ShardStats(int count, double sum, double lowest, double highest) {
+            this.count = count;
+            this.sum = sum;
+            this.lowest = lowest;
+            this.highest = highest;
+        }
+
+        public int getCount() { return count; }
+        public double getSum() { return sum; }
+        public double getLowest() { return lowest; }
+        public double getHighest() { return highest; }
+        public double average() { return count == 0 ? 0 : sum / count; }
+
+        public ShardStats merge(ShardStats other) {
+            if (count == 0) return other;
+            if (other.count == 0) return this;
+            return new ShardStats(count + other.count, sum + other.sum,
+                    Math.min(lowest, other.lowest), Math.max(highest, other.highest));
+        }
+    }
+
+    // ---------- Load Harness (concurrent op mix against a StudentStore, latency percentiles) ----------
+    public static class LoadTest {
+        public enum Op { ADD, UPDATE, DELETE, SEARCH, STATS, SAVE }
+
+        private static final String[] CLASSES = {"9-A", "9-B", "10-A", "10-B", "11-A", "11-B", "12-A", "12-B"};
+
+        private final String name;
+        private final StudentStore store;
+        private final int[] weights = {20, 30, 10, 25, 14, 1}; // per Op, in declaration order
+        private int threads = 8;
+        private boolean virtualThreads = false;
+        private long warmupMillis = 2_000;
+        private long durationMillis = 10_000;
+        private int seedRoster = 10_000;
+        private Path saveDir;
+
+        public LoadTest(String name, StudentStore store) {
+            this.name = name;
+            this.store = store;
+        }
+
+        public LoadTest threads(int n) {
+            if (n <= 0) throw new IllegalArgumentException("Thread count must be > 0.");
+            this.threads = n;
+            return this;
+        }
+
+        public LoadTest virtualThreads(boolean on) { this.virtualThreads = on; return this; }
+        public LoadTest warmup(long millis) { this.warmupMillis = millis; return this; }
+        public LoadTest duration(long millis) { this.durationMillis = millis; return this; }
+        public LoadTest seedRoster(int students) { this.seedRoster = students; return this; }
+        public LoadTest saveDir(Path dir) { this.saveDir = dir; return this; }
+
+        // "add=20,update=30,delete=10,search=25,stats=14,save=1"; ops left out get weight 0
+        public LoadTest mix(String spec) {
+            Arrays.fill(weights, 0);
+            for (String part : spec.split(",")) {
+                String[] kv = part.trim().split("=");
+                if (kv.length != 2) throw new IllegalArgumentException("Bad mix entry: " + part);
+                int w = Integer.parseInt(kv[1].trim());
+                if (w < 0) throw new IllegalArgumentException("Mix weight must be >= 0: " + part);
+                weights[Op.valueOf(kv[0].trim().toUpperCase()).ordinal()] = w;
+            }
+            if (Arrays.stream(weights).sum() == 0) throw new IllegalArgumentException("Mix has no operations.");
+            return this;
+        }
+
+        public Report run() throws IOException, InterruptedException {
+            Path dir = saveDir != null ? saveDir : Files.createTempDirectory("loadtest");
+            List<Student> seed = new ArrayList<>(seedRoster);
+            for (int roll = 1; roll <= seedRoster; roll++) seed.add(student(roll, new Random(roll)));
+            store.replaceAll(seed);
+            AtomicInteger nextRoll = new AtomicInteger(seedRoster + 1);
+
+            int total = Arrays.stream(weights).sum();
+            int[] cumulative = new int[weights.length];
+            for (int i = 0, acc = 0; i < weights.length; i++) cumulative[i] = acc += weights[i];
+
+            long start = System.nanoTime();
+            long measureFrom = start + warmupMillis * 1_000_000L;
+            long end = measureFrom + durationMillis * 1_000_000L;
+            Worker[] workers = new Worker[threads];
+            ExecutorService pool = newExecutor();
+            boolean virtual = virtualThreads && pool != null;
+            if (pool == null) pool = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> running = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    workers[i] = new Worker(i, nextRoll, cumulative, total, measureFrom, end, dir.resolve("save-" + i + ".csv"));
+                    running.add(pool.submit(workers[i]));
+                }
+                for (Future<?> f : running) {
+                    try {
+                        f.get();
+                    } catch (ExecutionException ex) {
+                        throw new IllegalStateException("Load worker failed: " + ex.getCause(), ex.getCause());
+                    }
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+
+            LatencyHistogram[] merged = new LatencyHistogram[Op.values().length];
+            long[] rejected = new long[merged.length];
+            for (int op = 0; op < merged.length; op++) {
+                merged[op] = new LatencyHistogram();
+                for (Worker w : workers) {
+                    merged[op].add(w.latency[op]);
+                    rejected[op] += w.rejected[op];
+                }
+            }
+            return new Report(name, threads, virtual, durationMillis, store.totalCount(), merged, rejected);
+        }
+
+        // Virtual threads when the runtime has them (Java 21+), looked up reflectively so this compiles on 17
+        private ExecutorService newExecutor() {
+            if (!virtualThreads) return null;
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException ex) {
+                return null;
+            }
+        }
+
+        private static Student student(int roll, Random rnd) {
+            return new Student("Student " + roll, roll, CLASSES[rnd.nextInt(CLASSES.length)],
+                    rnd.nextInt(10001) / 100.0, "98" + (10000000 + rnd.nextInt(90000000)), "s" + roll + "@example.com");
+        }
+
+        private final class Worker implements Runnable {
+            final LatencyHistogram[] latency = new LatencyHistogram[Op.values().length];
+            final long[] rejected = new long[latency.length];
+            private final Random rnd;
+            private final AtomicInteger nextRoll;
+            private final int[] cumulative;
+            private final int total;
+            private final long measureFrom, end;
+            private final CSVStorage saveTo;
+
+            Worker(int id, AtomicInteger nextRoll, int[] cumulative, int total, long measureFrom, long end, Path saveFile) {
+                this.rnd = new Random(31L * id + 7);
+                this.nextRoll = nextRoll;
+                this.cumulative = cumulative;
+                this.total = total;
+                this.measureFrom = measureFrom;
+                this.end = end;
+                this.saveTo = new CSVStorage(saveFile);
+                for (int i = 0; i < latency.length; i++) latency[i] = new LatencyHistogram();
+            }
+
+            @Override
+            public void run() {
+                Op[] ops = Op.values();
+                long now;
+                while ((now = System.nanoTime()) < end) {
+                    int pick = rnd.nextInt(total), op = 0;
+                    while (pick >= cumulative[op]) op++;
+                    boolean ok;
+                    try {
+                        ok = execute(ops[op]);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                    long done = System.nanoTime();
+                    if (now >= measureFrom) {
+                        latency[op].record(done - now);
+                        if (!ok) rejected[op]++;
+                    }
+                }
+            }
+
+            // Returns false when the store rejected the call (unknown or duplicate roll)
+            private boolean execute(Op op) throws IOException {
+                int roll = 1 + rnd.nextInt(nextRoll.get());
+                try {
+                    switch (op) {
+                        case ADD: store.add(student(nextRoll.getAndIncrement(), rnd)); return true;
+                        case UPDATE:
+                            if (!store.exists(roll)) return false;
+                            store.update(roll, student(roll, rnd));
+                            return true;
+                        case DELETE:
+                            if (!store.exists(roll)) return false;
+                            store.delete(roll);
+                            return true;
+                        case SEARCH: store.search("Student " + roll); return true;
+                        case STATS:
+                            store.totalCount();
+                            store.averageMarks();
+                            store.highestMarks();
+                            store.lowestMarks();
+                            store.passRate(40);
+                            return true;
+                        case SAVE: saveTo.save(store.list()); return true;
+                        default: return false;
+                    }
+                } catch (IllegalArgumentException ex) {
+                    return false; // lost a race with another worker's delete
+                }
+            }
+        }
+
+        public static class Report {
+            private final String name;
+            private final int threads;
+            private final boolean virtualThreads;
+            private final long durationMillis;
+            private final int finalRoster;
+            private final LatencyHistogram[] latency;
+            private final long[] rejected;
+
+            Report(String name, int threads, boolean virtualThreads, long durationMillis, int finalRoster,
+                   LatencyHistogram[] latency, long[] rejected) {
+                this.name = name;
+                this.threads = threads;
+                this.virtualThreads = virtualThreads;
+                this.durationMillis = durationMillis;
+                this.finalRoster = finalRoster;
+                this.latency = latency;
+                this.rejected = rejected;
+            }
+
+            public long totalOps() {
+                long n = 0;
+                for (LatencyHistogram h : latency) n += h.count();
+                return n;
+            }
+
+            public double throughput() { return totalOps() * 1000.0 / durationMillis; }
+            public LatencyHistogram latency(Op op) { return latency[op.ordinal()]; }
+
+            // Latencies in microseconds
+            public String toJson() {
+                StringBuilder sb = new StringBuilder();
+                sb.append(String.format(Locale.ROOT,
+                        "{\"store\":\"%s\",\"threads\":%d,\"virtualThreads\":%b,\"durationMs\":%d,\"finalRoster\":%d,"
+                                + "\"totalOps\":%d,\"opsPerSec\":%.1f,\"ops\":{",
+                        name, threads, virtualThreads, durationMillis, finalRoster, totalOps(), throughput()));
+                boolean first = true;
+                for (Op op : Op.values()) {
+                    LatencyHistogram h = latency[op.ordinal()];
+                    if (h.count() == 0) continue;
+                    if (!first) sb.append(',');
+                    first = false;
+                    sb.append(String.format(Locale.ROOT,
+                            "\"%s\":{\"count\":%d,\"rejected\":%d,\"opsPerSec\":%.1f,\"meanUs\":%.1f,"
+                                    + "\"p50Us\":%.1f,\"p99Us\":%.1f,\"p999Us\":%.1f,\"maxUs\":%.1f}",
+                            op.name().toLowerCase(), h.count(), rejected[op.ordinal()], h.count() * 1000.0 / durationMillis,
+                            h.mean() / 1000, h.percentile(50) / 1000.0, h.percentile(99) / 1000.0,
+                            h.percentile(99.9) / 1000.0, h.max() / 1000.0));
+                }
+                return sb.append("}}").toString();
+            }
+
+            @Override
+            public String toString() {
+                StringBuilder sb = new StringBuilder(String.format(Locale.ROOT,
+                        "%s: %d %s threads, %d ops in %d ms (%.0f ops/s), roster %d%n", name, threads,
+                        virtualThreads ? "virtual" : "platform", totalOps(), durationMillis, throughput(), finalRoster));
+                sb.append(String.format("  %-7s %10s %9s %10s %10s %10s %10s%n",
+                        "op", "count", "rejected", "p50 us", "p99 us", "p999 us", "max us"));
+                for (Op op : Op.values()) {
+                    LatencyHistogram h = latency[op.ordinal()];
+                    if (h.count() == 0) continue;
+                    sb.append(String.format(Locale.ROOT, "  %-7s %10d %9d %10.1f %10.1f %10.1f %10.1f%n",
+                            op.name().toLowerCase(), h.count(), rejected[op.ordinal()], h.percentile(50) / 1000.0,
+                            h.percentile(99) / 1000.0, h.percentile(99.9) / 1000.0, h.max() / 1000.0));
+                }
+                return sb.toString();
+            }
+        }
+    }
+
+    // ---------- Latency Histogram (log-linear buckets, ~1.6% relative error, HdrHistogram-style) ----------
+    public static class LatencyHistogram {
+        private static final int SUB_BITS = 6;
+        private static final int SUB = 1 << SUB_BITS; // linear sub-buckets per power of two
+        private final long[] counts = new long[2 * SUB + (64 - SUB_BITS) * SUB];
+        private long total, sum, max;
+
+        public void record(long nanos) {
+            if (nanos < 0) nanos = 0;
+            counts[indexOf(nanos)]++;
+            total++;
+            sum += nanos;
+            if (nanos > max) max = nanos;
+        }
+
+        public void add(LatencyHistogram other) {
+            for (int i = 0; i < counts.length; i++) counts[i] += other.counts[i];
+            total += other.total;
+            sum += other.sum;
+            max = Math.max(max, other.max);
+        }
+
+        public long count() { return total; }
+        public long max() { return max; }
+        public double mean() { return total == 0 ? 0 : (double) sum / total; }
+
+        // Highest value equivalent to the bucket holding the given percentile, capped at the true max
+        public long percentile(double pct) {
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(pct / 100.0 * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(upperBound(i), max);
+            }
+            return max;
+        }
+
+        // Values below 2*SUB are exact; above, each power of two is split into SUB linear steps
+        static int indexOf(long v) {
+            if (v < 2 * SUB) return (int) v;
+            int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+            return 2 * SUB + (shift - 1) * SUB + (int) ((v >>> shift) - SUB);
+        }
+
+        static long upperBound(int index) {
+            if (index < 2 * SUB) return index;
+            int shift = (index - 2 * SUB) / SUB + 1;
+            long mantissa = (index - 2 * SUB) % SUB + SUB;
+            return ((mantissa + 1) << shift) - 1;
+        }
+    }
+
+    // ---------- Table Model ----------
+    public static class StudentTableModel extends AbstractTableModel implements StudentChangeListener {
+        static final int DATA_COLUMNS = 6; // columns after these are derived from the service's marks index
+        private final String[] cols = {"Roll No", "Name", "Class", "Marks", "Phone", "Email", "Rank", "Percentile"};
+        private final Class<?>[] types = {Integer.class, String.class, String.class, Double.class, String.class, String.class,
+                Integer.class, Double.class};
+        private final List<RowCells> data = new ArrayList<>();
+        private final Map<Integer, Integer> rowOfRoll = new HashMap<>();
+        private final StudentService ranks;
+        private final DecimalFormat marksFormat = new DecimalFormat("#0.00");
+        private int rankEpoch = 0; // bumped per change batch: any edit can shift every rank
+        private Runnable ranksChanged;
+
+        public StudentTableModel(List<Student> backing) {
+            this(backing, null);
+        }
+
+        public StudentTableModel(List<Student> backing, StudentService ranks) {
+            this.ranks = ranks;
+            for (Student s : backing) data.add(new RowCells(s));
+            reindexFrom(0);
+        }
+
+        @Override public int getRowCount() { return data.size(); }
+        @Override public int getColumnCount() { return ranks == null ? DATA_COLUMNS : cols.length; }
+        @Override public String getColumnName(int column) { return cols[column]; }
+        @Override public Class<?> getColumnClass(int columnIndex) { return types[columnIndex]; }
+        @Override public boolean isCellEditable(int rowIndex, int columnIndex) { return false; }
+
+        // Boxed values come from the row cache, so sorting and repainting do not allocate.
+        @Override
+        public Object getValueAt(int rowIndex, int columnIndex) {
+            RowCells r = data.get(rowIndex);
+            Student s = r.student;
+            switch (columnIndex) {
+                case 0: return r.roll;
+                case 1: return s.getName();
+                case 2: return s.getClassName();
+                case 3: return r.marks;
+                case 4: return s.getPhone();
+                case 5: return s.getEmail();
+                case 6: return ranked(r).rank;
+                case 7: return ranked(r).percentile;
+                default: return null;
+            }
+        }
+
+        // Display text of a cell, formatted once per row version (rank columns: once per batch).
+        public String textAt(int rowIndex, int columnIndex) {
+            RowCells r = columnIndex >= DATA_COLUMNS ? ranked(data.get(rowIndex)) : data.get(rowIndex);
+            String t = r.text[columnIndex];
+            if (t == null) {
+                switch (columnIndex) {
+                    case 3: t = marksFormat.format(r.student.getMarks()); break;
+                    case 7: t = marksFormat.format(r.percentile); break;
+                    default: {
+                        Object v = getValueAt(rowIndex, columnIndex);
+                        t = v == null ? "" : v.toString();
+                    }
+                }
+                r.text[columnIndex] = t;
+            }
+            return t;
+        }
+
+        public Student getAt(int row) { return data.get(row).student; }
+        public void refresh() {
+            fireTableDataChanged();
+        }
+
+        private RowCells ranked(RowCells r) {
+            if (r.rankEpoch != rankEpoch) {
+                int roll = r.student.getRollNo();
+                int rank = ranks.rankOf(roll);
+                double pct = Math.round(ranks.percentileOf(roll) * 100) / 100.0;
+                if (r.rank == null || r.rank != rank) {
+                    r.rank = rank;
+                    r.text[6] = null;
+                }
+                if (r.percentile == null || r.percentile != pct) {
+                    r.percentile = pct;
+                    r.text[7] = null;
+                }
+                r.rankEpoch = rankEpoch;
+            }
+            return r;
+        }
+
+        // Applies each diff to the backing rows and fires the narrowest matching table event.
+        @Override
+        public void studentsChanged(List<StudentChange> batch) {
+            int appendedFrom = -1; // first row of a run of inserts not yet announced
+            for (StudentChange c : batch) {
+                boolean append = c.getKind() == StudentChange.Kind.INSERT && !rowOfRoll.containsKey(c.getRollNo());
+                if (!append && appendedFrom >= 0) {
+                    fireTableRowsInserted(appendedFrom, data.size() - 1);
+                    appendedFrom = -1;
+                }
+                switch (c.getKind()) {
+                    case INSERT: {
+                        Integer existing = rowOfRoll.get(c.getRollNo());
+                        if (existing != null) {
+                            // Already in the initial snapshot this model was built from
+                            data.set(existing, new RowCells(c.getStudent()));
+                            fireTableRowsUpdated(existing, existing);
+                            break;
+                        }
+                        // One event per run keeps a chunked load from re-sorting per row
+                        int row = data.size();
+                        data.add(new RowCells(c.getStudent()));
+                        rowOfRoll.put(c.getRollNo(), row);
+                        if (appendedFrom < 0) appendedFrom = row;
+                        break;
+                    }
+                    case UPDATE: {
+                        Integer row = rowOfRoll.remove(c.getPreviousRollNo());
+                        if (row == null) break;
+                        data.set(row, new RowCells(c.getStudent()));
+                        rowOfRoll.put(c.getRollNo(), row);
+                        fireTableRowsUpdated(row, row);
+                        break;
+                    }
+                    case DELETE: {
+                        Integer row = rowOfRoll.remove(c.getRollNo());
+                        if (row == null) break;
+                        data.remove((int) row);
+                        reindexFrom(row);
+                        fireTableRowsDeleted(row, row);
+                        break;
+                    }
+                    case BULK: {
+                        data.clear();
+                        for (Student s : c.getRoster()) data.add(new RowCells(s));
+                        rowOfRoll.clear();
+                        reindexFrom(0);
+                        fireTableDataChanged();
+                        break;
+                    }
+                }
+            }
+            if (appendedFrom >= 0) fireTableRowsInserted(appendedFrom, data.size() - 1);
+            // Any change can shift everyone's rank and percentile
+            if (ranks != null && !data.isEmpty()) {
+                rankEpoch++;
+                // Any sorter treats a full-height update as a reason to re-sort, so let the owner decide
+                if (ranksChanged != null) ranksChanged.run();
+                else fireTableChanged(new TableModelEvent(this, 0, data.size() - 1, TableModelEvent.ALL_COLUMNS));
+            }
+        }
+
+        // Replaces the default full-height update event sent when ranks may have shifted
+        public void onRanksChanged(Runnable r) { this.ranksChanged = r; }
+
+        private void reindexFrom(int first) {
+            for (int i = first; i < data.size(); i++) rowOfRoll.put(data.get(i).student.getRollNo(), i);
+        }
+
+        // Cached cells of one row version; a changed row gets a fresh RowCells.
+        private static final class RowCells {
+            final Student student;
+            final Integer roll;
+            final Double marks;
+            final String[] text = new String[8];
+            Integer rank;
+            Double percentile;
+            int rankEpoch = -1;
+
+            RowCells(Student s) {
+                this.student = s;
+                this.roll = s.getRollNo();
+                this.marks = s.getMarks();
+            }
+        }
+    }
+
+    // ---------- Cell Renderer ----------
+    // Paints the model's cached cell text instead of calling toString/format on every repaint.
+    public static class CachedCellRenderer extends DefaultTableCellRenderer {
+        private final StudentTableModel model;
+
+        public CachedCellRenderer(StudentTableModel model, int alignment) {
+            this.model = model;
+            setHorizontalAlignment(alignment);
+        }
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            super.getTableCellRendererComponent(table, null, isSelected, hasFocus, row, column);
+            setText(model.textAt(table.convertRowIndexToModel(row), table.convertColumnIndexToModel(column)));
+            return this;
+        }
+    }
+
+    // ---------- CSV Persistence ----------
+    public static class CSVStorage {
+        static final String HEADER = "rollNo,name,class,marks,phone,email";
+        private final Path file;
+
+        public CSVStorage(String filename) {
+            this(Paths.get(filename));
+        }
+
+        public CSVStorage(Path file) {
+            this.file = file;
+        }
+
+        public Path getFile() { return file; }
+
+        // Exam history is kept next to the roster: students.csv -> students.marks.csv
+        public Path historyFile() {
+            String name = file.getFileName().toString();
+            String base = name.endsWith(".csv") ? name.substring(0, name.length() - 4) : name;
+            return file.resolveSibling(base + ".marks.csv");
+        }
+
+        public void saveAll(StudentService service) throws IOException {
+            save(service.list());
+            if (!service.exams().isEmpty()) service.saveHistory(historyFile());
+        }
+
+        public void loadAll(StudentService service) throws IOException {
+            service.replaceAll(load());
+            service.loadHistory(historyFile());
+        }
+
+        public void save(List<Student> students) throws IOException {
+            List<String> out = new ArrayList<>();
+            out.add(HEADER);
+            for (Student s : students) out.add(formatRow(s));
+            Files.write(file, out, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        public List<Student> load() throws IOException {
+            List<Student> list = new ArrayList<>();
+            loadChunks(4096, list::addAll, pct -> { });
+            return list;
+        }
+
+        // Streams the file in chunks of up to chunkSize students, reporting progress as 0..100.
+        public void loadChunks(int chunkSize, java.util.function.Consumer<List<Student>> chunks,
+                               java.util.function.IntConsumer progress) throws IOException {
+            if (!Files.exists(file)) return;
+            long total = Math.max(1, Files.size(file));
+            long read = 0;
+            try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line = in.readLine(); // header
+                if (line == null) return;
+                read += line.length() + 1;
+                List<Student> chunk = new ArrayList<>(chunkSize);
+                while ((line = in.readLine()) != null) {
+                    read += line.length() + 1;
+                    if (line.trim().isEmpty()) continue;
+                    chunk.add(parseRow(line));
+                    if (chunk.size() == chunkSize) {
+                        chunks.accept(chunk);
+                        chunk = new ArrayList<>(chunkSize);
+                        progress.accept((int) Math.min(99, read * 100 / total));
+                    }
+                }
+                if (!chunk.isEmpty()) chunks.accept(chunk);
+                progress.accept(100);
+            }
+        }
+
+        static String formatRow(Student s) {
+            return String.format("%d,%s,%s,%.2f,%s,%s",
+                    s.getRollNo(),
+                    escape(s.getName()),
+                    escape(s.getClassName()),
+                    s.getMarks(),
+                    escape(nvl(s.getPhone())),
+                    escape(nvl(s.getEmail())));
+        }
+
+        // One data line in the save() column order: rollNo,name,class,marks,phone,email
+        static Student parseRow(String line) {
+            String[] parts = parseCSV(line);
+            // Expected 6 fields
+            int roll = Integer.parseInt(parts[0].trim());
+            String name = unescape(parts[1]);
+            String cls = unescape(parts[2]);
+            double marks = Double.parseDouble(parts[3].trim());
+            String phone = parts.length > 4 ? unescape(parts[4]) : "";
+            String email = parts.length > 5 ? unescape(parts[5]) : "";
+            return new Student(name, roll, cls, marks, phone, email);
+        }
+
+        static String nvl(String s) { return s == null ? "" : s; }
+
+        static String escape(String s) {
+            if (s == null) return "";
+            boolean quote = s.contains(",") || s.contains("\"") || s.contains("\n");
+            String val = s.replace("\"", "\"\"");
+            return quote ? "\"" + val + "\"" : val;
+        }
+
+        static String unescape(String s) {
+            s = s.trim();
+            if (s.startsWith("\"") && s.endsWith("\"")) {
+                s = s.substring(1, s.length() - 1).replace("\"\"", "\"");
+            }
+            return s;
+        }
+
+        static String[] parseCSV(String line) {
+            List<String> tokens = new ArrayList<>();
+            StringBuilder sb = new StringBuilder();
+            boolean inQuotes = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (c == '\"') {
+                    inQuotes = !inQuotes;
+                } else if (c == ',' && !inQuotes) {
+                    tokens.add(sb.toString().trim());
+                    sb.setLength(0);
+                } else {
+                    sb.append(c);
+                }
+            }
+            tokens.add(sb.toString().trim());
+            return tokens.toArray(new String[0]);
+        }
+    }
+
+    // ---------- Roster Merge (external merge sort of roster CSVs by roll, bounded memory) ----------
+    public static class RosterMerge {
+        // What to do when one roll has rows that differ; identical rows are always collapsed
+        public enum Policy { FAIL, KEEP_FIRST, KEEP_LAST, HIGHEST_MARKS, DROP }
+
+        private final Policy policy;
+        private final int chunkRows;
+        private final int fanIn;
+        private final Path tempDir;
+
+        public RosterMerge(Policy policy, int chunkRows, int fanIn, Path tempDir) {
+            if (chunkRows <= 0) throw new IllegalArgumentException("Chunk size must be > 0.");
+            if (fanIn < 2) throw new IllegalArgumentException("Merge fan-in must be >= 2.");
+            this.policy = policy;
+            this.chunkRows = chunkRows;
+            this.fanIn = fanIn;
+            this.tempDir = tempDir;
+        }
+
+        // Inputs are ranked in list order: "first" and "last" refer to it, then to row order within a file.
+        public Result merge(List<Path> inputs, Writer out, Writer conflicts) throws IOException {
+            Path work = Files.createTempDirectory(tempDir, "roster-merge");
+            try {
+                Result result = new Result();
+                List<Path> runs = spillSortedRuns(inputs, work, result);
+                // Keep open files bounded: merge consecutive groups until one pass can take them all
+                while (runs.size() > fanIn) {
+                    List<Path> next = new ArrayList<>();
+                    for (int i = 0; i < runs.size(); i += fanIn) {
+                        List<Path> group = runs.subList(i, Math.min(runs.size(), i + fanIn));
+                        Path merged = work.resolve("run-" + result.passes + "-" + next.size() + ".csv");
+                        try (BufferedWriter w = Files.newBufferedWriter(merged, StandardCharsets.UTF_8)) {
+                            mergeRuns(group, (roll, rows) -> {
+                                for (Candidate c : rows) w.write(c.source + "," + c.row + "\n");
+                            });
+                        }
+                        for (Path p : group) Files.delete(p);
+                        next.add(merged);
+                    }
+                    runs = next;
+                    result.passes++;
+                }
+                out.write(CSVStorage.HEADER + "\n");
+                if (conflicts != null) conflicts.write("source,resolution," + CSVStorage.HEADER + "\n");
+                mergeRuns(runs, (roll, rows) -> resolve(roll, rows, inputs, out, conflicts, result));
+                result.passes++;
+                out.flush();
+                if (conflicts != null) conflicts.flush();
+                return result;
+            } finally {
+                try (DirectoryStream<Path> left = Files.newDirectoryStream(work)) {
+                    for (Path p : left) Files.deleteIfExists(p);
+                }
+                Files.deleteIfExists(work);
+            }
+        }
+
+        // Phase 1: read every input in order, sort chunkRows rows at a time by roll, write each as a run
+        private List<Path> spillSortedRuns(List<Path> inputs, Path work, Result result) throws IOException {
+            List<Path> runs = new ArrayList<>();
+            List<Candidate> buffer = new ArrayList<>(chunkRows);
+            try {
+                for (int src = 0; src < inputs.size(); src++) {
+                    if (!Files.exists(inputs.get(src))) throw new FileNotFoundException(inputs.get(src).toString());
+                    int source = src;
+                    new CSVStorage(inputs.get(src)).loadChunks(chunkRows, chunk -> {
+                        for (Student s : chunk) {
+                            buffer.add(new Candidate(s.getRollNo(), source, CSVStorage.formatRow(s)));
+                            result.inputRows++;
+                            if (buffer.size() == chunkRows) spill(buffer, work, runs);
+                        }
+                    }, pct -> { });
+                }
+                if (!buffer.isEmpty()) spill(buffer, work, runs);
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+            result.runs = runs.size();
+            return runs;
+        }
+
+        private static void spill(List<Candidate> buffer, Path work, List<Path> runs) {
+            // List.sort is stable, so equal rolls stay in input order
+            buffer.sort(Comparator.comparingInt(c -> c.roll));
+            Path run = work.resolve("run-" + runs.size() + ".csv");
+            try (BufferedWriter w = Files.newBufferedWriter(run, StandardCharsets.UTF_8)) {
+                for (Candidate c : buffer) w.write(c.source + "," + c.row + "\n");
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            runs.add(run);
+            buffer.clear();
+        }
+
+        // k-way merge; rows of one roll are handed over together, in input order
+        private static void mergeRuns(List<Path> runs, RollGroup sink) throws IOException {
+            PriorityQueue<RunCursor> heads = new PriorityQueue<>(
+                    Comparator.<RunCursor>comparingInt(c -> c.head.roll)
+                            .thenComparingInt(c -> c.head.source)
+                            .thenComparingInt(c -> c.order));
+            List<RunCursor> open = new ArrayList<>();
+            try {
+                for (int i = 0; i < runs.size(); i++) {
+                    RunCursor c = new RunCursor(Files.newBufferedReader(runs.get(i), StandardCharsets.UTF_8), i);
+                    open.add(c);
+                    if (c.advance()) heads.add(c);
+                }
+                List<Candidate> group = new ArrayList<>();
+                while (!heads.isEmpty()) {
+                    int roll = heads.peek().head.roll;
+                    group.clear();
+                    while (!heads.isEmpty() && heads.peek().head.roll == roll) {
+                        RunCursor c = heads.poll();
+                        group.add(c.head);
+                        if (c.advance()) heads.add(c);
+                    }
+                    sink.accept(roll, group);
+                }
+            } finally {
+                for (RunCursor c : open) c.in.close();
+            }
+        }
+
+        private void resolve(int roll, List<Candidate> rows, List<Path> inputs, Writer out, Writer conflicts,
+                             Result result) throws IOException {
+            List<Candidate> distinct = new ArrayList<>();
+            for (Candidate c : rows) {
+                boolean seen = false;
+                for (Candidate d : distinct) if (d.row.equals(c.row)) { seen = true; break; }
+                if (!seen) distinct.add(c);
+            }
+            result.duplicateRows += rows.size() - distinct.size();
+            if (distinct.size() == 1) {
+                out.write(distinct.get(0).row + "\n");
+                result.outputRows++;
+                return;
+            }
+
+            result.conflicts++;
+            Candidate kept;
+            switch (policy) {
+                case KEEP_FIRST: kept = distinct.get(0); break;
+                case KEEP_LAST: kept = distinct.get(distinct.size() - 1); break;
+                case HIGHEST_MARKS: {
+                    kept = distinct.get(0);
+                    for (Candidate c : distinct) {
+                        if (CSVStorage.parseRow(c.row).getMarks() > CSVStorage.parseRow(kept.row).getMarks()) kept = c;
+                    }
+                    break;
+                }
+                default: kept = null; // FAIL, DROP
+            }
+            if (conflicts != null) {
+                for (Candidate c : distinct) {
+                    String resolution = c == kept ? "kept" : policy == Policy.FAIL ? "conflict" : "dropped";
+                    conflicts.write(CSVStorage.escape(inputs.get(c.source).toString()) + "," + resolution + "," + c.row + "\n");
+                }
+            }
+            if (policy == Policy.FAIL) {
+                if (conflicts != null) conflicts.flush();
+                throw new IllegalArgumentException("Conflicting rows for Roll No " + roll + " in "
+                        + inputs.get(distinct.get(0).source) + " and " + inputs.get(distinct.get(1).source) + ".");
+            }
+            if (kept != null) {
+                out.write(kept.row + "\n");
+                result.outputRows++;
+            }
+        }
+
+        private interface RollGroup {
+            void accept(int roll, List<Candidate> rows) throws IOException;
+        }
+
+        // One row as written by CSVStorage.formatRow, tagged with the index of the input it came from
+        private static final class Candidate {
+            final int roll;
+            final int source;
+            final String row;
+
+            Candidate(int roll, int source, String row) {
+                this.roll = roll;
+                this.source = source;
+                this.row = row;
+            }
+        }
+
+        private static final class RunCursor {
+            final BufferedReader in;
+            final int order;
+            Candidate head;
+
+            RunCursor(BufferedReader in, int order) {
+                this.in = in;
+                this.order = order;
+            }
+
+            // Run lines are "source,rollNo,name,..."
+            boolean advance() throws IOException {
+                String line = in.readLine();
+                if (line == null) return false;
+                int a = line.indexOf(','), b = line.indexOf(',', a + 1);
+                String row = line.substring(a + 1);
+                head = new Candidate(Integer.parseInt(row.substring(0, b - a - 1)), Integer.parseInt(line.substring(0, a)), row);
+                return true;
+            }
+        }
+
+        public static class Result {
+            private long inputRows, outputRows, duplicateRows, conflicts;
+            private int runs, passes;
+
+            public long getInputRows() { return inputRows; }
+            public long getOutputRows() { return outputRows; }
+            public long getDuplicateRows() { return duplicateRows; }
+            public long getConflicts() { return conflicts; }
+            public int getRuns() { return runs; }
+            public int getPasses() { return passes; }
+
+            @Override
+            public String toString() {
+                return String.format("%d rows in, %d out; %d identical duplicates collapsed, %d conflicting rolls; "
+                        + "%d sorted runs, %d merge passes", inputRows, outputRows, duplicateRows, conflicts, runs, passes);
+            }
+        }
+    }
+
+    // ---------- Change-data-capture feed (records changed since a cursor) ----------
+    // Each record is written once, in its latest state, tagged with the version that last touched it:
+    //   CSV:    op,version,rollNo,name,class,marks,phone,email   (op = upsert | delete | reset | cursor)
+    //   NDJSON: {"op":"upsert","version":7,"rollNo":101,...} per line
+    // A leading "reset" record means the output is a full snapshot: drop everything not re-sent.
+    // The closing "cursor" record carries the token to pass next time, "<logId hex>:<version>"
+    // (CSV puts it in the rollNo column). Versions restart with every process, so a cursor from
+    // another run of the primary always gets a snapshot.
+    public static class ChangeFeed {
+        public enum Format { CSV, NDJSON }
+
+        private ChangeFeed() { }
+
+        // Writes the records changed after the cursor and returns the cursor to pass next time. An empty
+        // cursor, one from another log, a compacted log or an intervening bulk replace yields a snapshot.
+        public static String export(StudentService service, String cursor, Format format, Writer out) throws IOException {
+            long toVersion;
+            long logId = service.getLogId();
+            List<VersionedChange> changes = null;
+            List<Student> snapshot = null;
+            long sinceVersion = sinceVersion(cursor, logId);
+            synchronized (service) { // one consistent cut of version, log and roster
+                toVersion = service.getVersion();
+                if (sinceVersion >= 0) changes = service.changesSince(sinceVersion);
+                if (changes == null || containsBulk(changes)) snapshot = service.list();
+            }
+
+            BufferedWriter w = new BufferedWriter(out);
+            if (format == Format.CSV) w.write("op,version,rollNo,name,class,marks,phone,email\n");
+            if (snapshot != null) {
+                writeRecord(w, format, "reset", toVersion, 0, null);
+                for (Student s : snapshot) writeRecord(w, format, "upsert", toVersion, s.getRollNo(), s);
+            } else {
+                // Collapse to the last change per roll, ordered by the version of that change
+                Map<Integer, VersionedChange> latest = new LinkedHashMap<>();
+                for (VersionedChange vc : changes) {
+                    StudentChange c = vc.getChange();
+                    if (c.getKind() == StudentChange.Kind.UPDATE && c.getPreviousRollNo() != c.getRollNo()) {
+                        latest.remove(c.getPreviousRollNo());
+                        latest.put(c.getPreviousRollNo(), new VersionedChange(vc.getVersion(), StudentChange.deleted(c.getPreviousRollNo())));
+                    }
+                    latest.remove(c.getRollNo());
+                    latest.put(c.getRollNo(), vc);
+                }
+                for (VersionedChange vc : latest.values()) {
+                    StudentChange c = vc.getChange();
+                    if (c.getKind() == StudentChange.Kind.DELETE) {
+                        writeRecord(w, format, "delete", vc.getVersion(), c.getRollNo(), null);
+                    } else {
+                        writeRecord(w, format, "upsert", vc.getVersion(), c.getRollNo(), c.getStudent());
+                    }
+                }
+            }
+            String next = Long.toHexString(logId) + ":" + toVersion;
+            if (format == Format.CSV) w.write("cursor," + toVersion + "," + next + ",,,,,\n");
+            else w.write("{\"op\":\"cursor\",\"version\":" + toVersion + ",\"cursor\":" + json(next) + "}\n");
+            w.flush();
+            return next;
+        }
+
+        // Version to resume after, or -1 when the cursor is empty, malformed or from another log
+        static long sinceVersion(String cursor, long logId) {
+            if (cursor == null) return -1;
+            int colon = cursor.indexOf(':');
+            if (colon < 0) return -1;
+            try {
+                if (Long.parseUnsignedLong(cursor.substring(0, colon), 16) != logId) return -1;
+                return Long.parseLong(cursor.substring(colon + 1));
+            } catch (NumberFormatException ex) {
+                return -1;
+            }
+        }
+
+        private static boolean containsBulk(List<VersionedChange> changes) {
+            for (VersionedChange vc : changes) if (vc.getChange().getKind() == StudentChange.Kind.BULK) return true;
+            return false;
+        }
+
+        private static void writeRecord(BufferedWriter w, Format format, String op, long version, int roll, Student s) throws IOException {
+            if (format == Format.CSV) {
+                if (s == null) {
+                    w.write(op + "," + version + "," + (op.equals("reset") ? "" : String.valueOf(roll)) + ",,,,,\n");
+                } else {
+                    w.write(String.format("%s,%d,%d,%s,%s,%.2f,%s,%s%n", op, version, roll,
+                            CSVStorage.escape(s.getName()),
+                            CSVStorage.escape(s.getClassName()),
+                            s.getMarks(),
+                            CSVStorage.escape(CSVStorage.nvl(s.getPhone())),
+                            CSVStorage.escape(CSVStorage.nvl(s.getEmail()))));
+                }
+                return;
+            }
+            StringBuilder sb = new StringBuilder("{\"op\":\"").append(op).append("\",\"version\":").append(version);
+            if (!op.equals("reset")) sb.append(",\"rollNo\":").append(roll);
+            if (s != null) {
+                sb.append(",\"name\":").append(json(s.getName()))
+                  .append(",\"class\":").append(json(s.getClassName()))
+                  .append(",\"marks\":").append(s.getMarks())
+                  .append(",\"phone\":").append(json(s.getPhone()))
+                  .append(",\"email\":").append(json(s.getEmail()));
+            }
+            w.write(sb.append("}\n").toString());
+        }
+
+        static String json(String s) {
+            if (s == null) return "null";
+            StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"': sb.append("\\\""); break;
+                    case '\\': sb.append("\\\\"); break;
+                    case '\n': sb.append("\\n"); break;
+                    case '\r': sb.append("\\r"); break;
+                    case '\t': sb.append("\\t"); break;
+                    default:
+                        if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                        else sb.append(c);
+                }
+            }
+            return sb.append('"').toString();
+        }
+
+        // Asks a running primary for its feed; the primary holds the change log, a fresh process would not.
+        public static void fetch(String host, int port, String cursor, Format format, OutputStream sink) throws IOException {
+            try (Socket socket = new Socket(host, port)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                out.writeByte(ReplicationWire.EXPORT);
+                out.writeInt(ReplicationWire.MAGIC);
+                out.writeUTF(cursor);
+                out.writeByte(format.ordinal());
+                out.flush();
+                InputStream in = socket.getInputStream();
+                byte[] buf = new byte[8192];
+                for (int n; (n = in.read(buf)) > 0; ) sink.write(buf, 0, n);
+                sink.flush();
+            }
+        }
+    }
+
+    // ---------- Replication (primary streams its mutation log to replicas over TCP) ----------
+    // Wire format, all frames big-endian via DataOutputStream:
+    //   replica -> primary: HELLO magic logId lastSeq, then ACK seq after every applied frame
+    //   primary -> replica: SNAPSHOT logId seq n student*n | BATCH n (seq change)*n | HEARTBEAT seq
+    //   export client -> primary: EXPORT magic cursor(UTF) format, answered with the ChangeFeed text
+    // Sequence numbers are the primary service's versions.
+    static final class ReplicationWire {
+        static final int MAGIC = 0x534D5231; // "SMR1"
+        static final byte HELLO = 1, SNAPSHOT = 2, BATCH = 3, HEARTBEAT = 4, ACK = 5, EXPORT = 6;
+
+        private ReplicationWire() { }
+
+        static void writeStudent(DataOutputStream out, Student s) throws IOException {
+            out.writeInt(s.getRollNo());
+            out.writeUTF(s.getName());
+            out.writeUTF(s.getClassName());
+            out.writeDouble(s.getMarks());
+            out.writeUTF(s.getPhone() == null ? "" : s.getPhone());
+            out.writeUTF(s.getEmail() == null ? "" : s.getEmail());
+        }
+
+        static Student readStudent(DataInputStream in) throws IOException {
+            int roll = in.readInt();
+            String name = in.readUTF();
+            String cls = in.readUTF();
+            double marks = in.readDouble();
+            return new Student(name, roll, cls, marks, in.readUTF(), in.readUTF());
+        }
+
+        static void writeRoster(DataOutputStream out, List<Student> roster) throws IOException {
+            out.writeInt(roster.size());
+            for (Student s : roster) writeStudent(out, s);
+        }
+
+        static List<Student> readRoster(DataInputStream in) throws IOException {
+            int n = in.readInt();
+            if (n < 0) throw new IOException("Bad roster size: " + n);
+            // Sized from the peer's count only up to a cap; a bogus count then fails at end of stream
+            List<Student> roster = new ArrayList<>(Math.min(n, 4096));
+            for (int i = 0; i < n; i++) roster.add(readStudent(in));
+            return roster;
+        }
+
+        static void writeChange(DataOutputStream out, StudentChange c) throws IOException {
+            out.writeByte(c.getKind().ordinal());
+            switch (c.getKind()) {
+                case INSERT: writeStudent(out, c.getStudent()); break;
+                case UPDATE: out.writeInt(c.getPreviousRollNo()); writeStudent(out, c.getStudent()); break;
+                case DELETE: out.writeInt(c.getRollNo()); break;
+                case BULK: writeRoster(out, c.getRoster()); break;
+            }
+        }
+
+        static StudentChange readChange(DataInputStream in) throws IOException {
+            int kind = in.readByte();
+            if (kind < 0 || kind >= StudentChange.Kind.values().length) throw new IOException("Bad change kind: " + kind);
+            switch (StudentChange.Kind.values()[kind]) {
+                case INSERT: return StudentChange.inserted(readStudent(in));
+                case UPDATE: {
+                    int previousRoll = in.readInt();
+                    return StudentChange.updated(previousRoll, readStudent(in));
+                }
+                case DELETE: return StudentChange.deleted(in.readInt());
+                default: return StudentChange.bulk(readRoster(in));
+            }
+        }
+    }
+
+    public static class ReplicationPrimary implements Closeable {
+        private static final int MAX_FRAME_ENTRIES = 512;
+        private static final int SESSION_QUEUE_LIMIT = 100_000;
+        private static final int HANDSHAKE_TIMEOUT_MILLIS = 10_000;
+
+        private final StudentService service;
+        private final ServerSocket server;
+        private final List<ReplicaSession> sessions = new CopyOnWriteArrayList<>();
+        private final MutationListener recorder = this::record;
+        private volatile boolean closed = false;
+
+        // Catch-up reaches back as far as the service's change log; older replicas get a snapshot.
+        public ReplicationPrimary(StudentService service, int port) throws IOException {
+            this.service = service;
+            this.server = new ServerSocket(port);
+            service.addMutationListener(recorder);
+            Thread accept = new Thread(this::acceptLoop, "replication-accept");
+            accept.setDaemon(true);
+            accept.start();
+        }
+
+        public int getPort() { return server.getLocalPort(); }
+
+        public String status() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("primary seq=").append(service.getVersion()).append(" replicas=").append(sessions.size());
+            for (ReplicaSession s : sessions) {
+                sb.append("\n  ").append(s.socket.getRemoteSocketAddress()).append(" acked=").append(s.ackedSeq);
+            }
+            return sb.toString();
+        }
+
+        // Runs inside StudentService's synchronized methods, so entries arrive in version order.
+        private void record(VersionedChange change) {
+            for (ReplicaSession s : sessions) s.enqueue(change);
+        }
+
+        private void acceptLoop() {
+            int failures = 0;
+            while (!closed) {
+                try {
+                    Socket socket = server.accept();
+                    failures = 0;
+                    Thread t = new Thread(() -> handshake(socket), "replication-handshake");
+                    t.setDaemon(true);
+                    t.start();
+                } catch (IOException ex) {
+                    if (closed) return;
+                    // Persistent errors (e.g. out of file descriptors) back off instead of spinning
+                    try {
+                        Thread.sleep(Math.min(1000, 10L << Math.min(failures++, 7)));
+                    } catch (InterruptedException ie) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        private void handshake(Socket socket) {
+            try {
+                socket.setTcpNoDelay(true);
+                // A peer that connects and never sends its request must not hold this thread forever
+                socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+                byte type = in.readByte();
+                if (in.readInt() != ReplicationWire.MAGIC) {
+                    socket.close();
+                    return;
+                }
+                if (type == ReplicationWire.EXPORT) {
+                    String since = in.readUTF();
+                    int f = in.readByte();
+                    if (f < 0 || f >= ChangeFeed.Format.values().length) {
+                        socket.close();
+                        return;
+                    }
+                    ChangeFeed.Format format = ChangeFeed.Format.values()[f];
+                    socket.setSoTimeout(0);
+                    try (Writer w = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+                        ChangeFeed.export(service, since, format, w);
+                    }
+                    return;
+                }
+                if (type != ReplicationWire.HELLO) {
+                    socket.close();
+                    return;
+                }
+                long replicaLogId = in.readLong();
+                long replicaSeq = in.readLong();
+                socket.setSoTimeout(0); // acks may legitimately be quiet for a long time
+                ReplicaSession session = new ReplicaSession(socket, in, out);
+                // StudentService locks on itself, so no mutation can land between the
+                // catch-up/snapshot decision and the session joining the live stream.
+                synchronized (service) {
+                    List<VersionedChange> missed = replicaLogId == service.getLogId() ? service.changesSince(replicaSeq) : null;
+                    if (missed != null) {
+                        for (VersionedChange c : missed) session.enqueue(c);
+                    } else {
+                        session.enqueue(new Snapshot(service.getVersion(), service.list()));
+                    }
+                    sessions.add(session);
+                }
+                session.start();
+            } catch (IOException | RuntimeException ex) {
+                // A malformed request must not leave the connection open
+                try { socket.close(); } catch (IOException ignored) {}
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            service.removeMutationListener(recorder);
+            server.close();
+            for (ReplicaSession s : sessions) s.close();
+        }
+
+        private static final class Snapshot {
+            final long seq;
+            final List<Student> roster;
+            Snapshot(long seq, List<Student> roster) { this.seq = seq; this.roster = roster; }
+        }
+
+        // One connected replica: a sender thread that packs queued entries into BATCH frames
+        // without waiting for acks, and a reader thread that tracks the replica's acked seq.
+        private final class ReplicaSession {
+            private final Socket socket;
+            private final DataInputStream in;
+            private final DataOutputStream out;
+            private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>(SESSION_QUEUE_LIMIT);
+            private volatile long ackedSeq = 0;
+            private long sentSeq = 0;
+
+            ReplicaSession(Socket socket, DataInputStream in, DataOutputStream out) {
+                this.socket = socket;
+                this.in = in;
+                this.out = out;
+            }
+
+            void enqueue(Object item) {
+                // A replica that falls this far behind is dropped; it will reconnect and catch up.
+                if (!queue.offer(item)) close();
+            }
+
+            void start() {
+                Thread sender = new Thread(this::sendLoop, "replication-send");
+                sender.setDaemon(true);
+                sender.start();
+                Thread acks = new Thread(this::ackLoop, "replication-ack");
+                acks.setDaemon(true);
+                acks.start();
+            }
+
+            private void sendLoop() {
+                List<Object> drained = new ArrayList<>();
+                try {
+                    while (!socket.isClosed()) {
+                        Object first = queue.poll(1, TimeUnit.SECONDS);
+                        if (first == null) {
+                            out.writeByte(ReplicationWire.HEARTBEAT);
+                            out.writeLong(sentSeq);
+                            out.flush();
+                            continue;
+                        }
+                        drained.add(first);
+                        queue.drainTo(drained, MAX_FRAME_ENTRIES - 1);
+                        writeFrames(drained);
+                        out.flush();
+                        drained.clear();
+                    }
+                } catch (IOException | InterruptedException ex) {
+                    // connection lost; replica reconnects with its last applied seq
+                } finally {
+                    close();
+                }
+            }
+
+            private void writeFrames(List<Object> items) throws IOException {
+                int i = 0;
+                while (i < items.size()) {
+                    Object item = items.get(i);
+                    if (item instanceof Snapshot) {
+                        Snapshot snap = (Snapshot) item;
+                        out.writeByte(ReplicationWire.SNAPSHOT);
+                        out.writeLong(service.getLogId());
+                        out.writeLong(snap.seq);
+                        ReplicationWire.writeRoster(out, snap.roster);
+                        sentSeq = snap.seq;
+                        i++;
+                        continue;
+                    }
+                    int end = i;
+                    while (end < items.size() && items.get(end) instanceof VersionedChange) end++;
+                    out.writeByte(ReplicationWire.BATCH);
+                    out.writeInt(end - i);
+                    for (; i < end; i++) {
+                        VersionedChange c = (VersionedChange) items.get(i);
+                        out.writeLong(c.getVersion());
+                        ReplicationWire.writeChange(out, c.getChange());
+                        sentSeq = c.getVersion();
+                    }
+                }
+            }
+
+            private void ackLoop() {
+                try {
+                    while (!socket.isClosed()) {
+                        if (in.readByte() != ReplicationWire.ACK) break;
+                        ackedSeq = in.readLong();
+                    }
+                } catch (IOException ignored) {
+                } finally {
+                    close();
+                }
+            }
+
+            void close() {
+                sessions.remove(this);
+                try { socket.close(); } catch (IOException ignored) {}
+            }
+        }
+    }
+
+    // Keeps a local StudentService in sync with a primary and serves reads from it.
+    // Reconnects with backoff and resumes from the last applied seq.
+    public static class ReplicationReplica implements Closeable {
+        private final StudentService service;
+        private final String host;
+        private final int port;
+        private volatile long logId = 0;
+        private volatile long lastApplied = 0;
+        private volatile boolean connected = false;
+        private volatile boolean closed = false;
+        private volatile Socket socket;
+
+        public ReplicationReplica(StudentService service, String host, int port) {
+            this.service = service;
+            this.host = host;
+            this.port = port;
+        }
+
+        public void start() {
+            Thread t = new Thread(this::runLoop, "replication-replica");
+            t.setDaemon(true);
+            t.start();
+        }
+
+        public StudentService getService() { return service; }
+        public long getLastApplied() { return lastApplied; }
+        public boolean isConnected() { return connected; }
+
+        public String status() {
+            return "replica of " + host + ":" + port + (connected ? " connected" : " disconnected")
+                    + " seq=" + lastApplied + " students=" + service.totalCount();
+        }
+
+        private void runLoop() {
+            long backoff = 250;
+            while (!closed) {
+                try (Socket s = new Socket(host, port)) {
+                    socket = s;
+                    s.setTcpNoDelay(true);
+                    s.setSoTimeout(5000); // primary heartbeats every second
+                    DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(), 64 * 1024));
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+                    out.writeByte(ReplicationWire.HELLO);
+                    out.writeInt(ReplicationWire.MAGIC);
+                    out.writeLong(logId);
+                    out.writeLong(lastApplied);
+                    out.flush();
+                    connected = true;
+                    backoff = 250;
+                    readFrames(in, out);
+                } catch (IOException ex) {
+                    // fall through to reconnect
+                } finally {
+                    connected = false;
+                }
+                if (closed) return;
+                try { Thread.sleep(backoff); } catch (InterruptedException ex) { return; }
+                backoff = Math.min(backoff * 2, 5000);
+            }
+        }
+
+        private void readFrames(DataInputStream in, DataOutputStream out) throws IOException {
+            while (!closed) {
+                byte type = in.readByte();
+                switch (type) {
+                    case ReplicationWire.SNAPSHOT: {
+                        long id = in.readLong();
+                        long seq = in.readLong();
+                        service.applyReplicated(StudentChange.bulk(ReplicationWire.readRoster(in)));
+                        logId = id;
+                        lastApplied = seq;
+                        break;
+                    }
+                    case ReplicationWire.BATCH: {
+                        int n = in.readInt();
+                        for (int i = 0; i < n; i++) {
+                            long seq = in.readLong();
+                            StudentChange change = ReplicationWire.readChange(in);
+                            if (seq <= lastApplied) continue;
+                            if (seq != lastApplied + 1) throw new IOException("Gap in replication log at seq " + seq);
+                            service.applyReplicated(change);
+                            lastApplied = seq;
+                        }
+                        break;
+                    }
+                    case ReplicationWire.HEARTBEAT:
+                        in.readLong();
+                        continue;
+                    default:
+                        throw new IOException("Unknown frame type: " + type);
+                }
+                out.writeByte(ReplicationWire.ACK);
+                out.writeLong(lastApplied);
+                out.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            Socket s = socket;
+            if (s != null) s.close();
+        }
+    }
+
+    // ---------- Roster Workspace (many CSV rosters, LRU-cached under a memory budget) ----------
+    // Each *.csv in the directory is one roster backed by its own StudentService and CSVStorage.
+    // Rosters load on first access; when the estimated footprint of loaded rosters exceeds the
+    // budget, the least recently used ones are evicted, and saved first if they were modified.
+    // A service handed out by get() may be evicted later: hold it only for the current operation,
+    // or pin() it for as long as a window keeps using it.
+    public static class RosterWorkspace implements Closeable {
+        private static final int ROSTER_CHANGE_LOG = 256;
+
+        private final Path dir;
+        private final long budgetBytes;
+        private final LinkedHashMap<String, OpenRoster> loaded = new LinkedHashMap<>(16, 0.75f, true);
+        private int loads = 0;
+        private int evictions = 0;
+        private int scans = 0; // rosters read for a cross-roster query without being cached
+
+        public RosterWorkspace(Path dir, long budgetBytes) throws IOException {
+            if (budgetBytes <= 0) throw new IllegalArgumentException("Memory budget must be > 0.");
+            this.dir = dir;
+            this.budgetBytes = budgetBytes;
+            Files.createDirectories(dir);
+        }
+
+        // Roster names (file names without .csv), including new rosters not yet flushed.
+        public synchronized List<String> rosterNames() throws IOException {
+            Set<String> names = new TreeSet<>(loaded.keySet());
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.csv")) {
+                for (Path p : files) {
+                    String f = p.getFileName().toString();
+                    if (f.endsWith(".marks.csv")) continue; // a roster's exam history, see CSVStorage.historyFile
+                    names.add(f.substring(0, f.length() - 4));
+                }
+            }
+            return new ArrayList<>(names);
+        }
+
+        // Loads the roster if needed (an unknown name starts empty) and marks it most recently used.
+        public synchronized StudentService get(String name) throws IOException {
+            OpenRoster r = loaded.get(name);
+            if (r == null) {
+                if (!name.matches("[\\w.-]+") || name.endsWith(".marks")) throw new IllegalArgumentException("Invalid roster name: " + name);
+                r = new OpenRoster(new CSVStorage(dir.resolve(name + ".csv")));
+                r.storage.loadAll(r.service);
+                r.dirty = false;
+                r.savedHistory = r.service.getHistoryVersion();
+                loaded.put(name, r);
+                loads++;
+            }
+            enforceBudget(r);
+            return r.service;
+        }
+
+        public synchronized <T> T withRoster(String name, java.util.function.Function<StudentService, T> fn) throws IOException {
+            return fn.apply(get(name));
+        }
+
+        public synchronized StudentService pin(String name) throws IOException {
+            StudentService s = get(name);
+            loaded.get(name).pins++;
+            return s;
+        }
+
+        public synchronized void unpin(String name) {
+            OpenRoster r = loaded.get(name);
+            if (r != null && r.pins > 0) r.pins--;
+        }
+
+        // ---- Cross-roster queries (bypass the LRU, see scanAll) ----
+        public Map<String, List<Student>> search(String text) throws IOException {
+            return scanAll(s -> {
+                List<Student> found = s.search(text);
+                return found.isEmpty() ? null : found;
+            });
+        }
 
-        public synchronized boolean exists(int rollNo) {
-            return byRoll.containsKey(rollNo);
+        public Map<String, Student> findRoll(int rollNo) throws IOException {
+            return scanAll(s -> s.get(rollNo));
         }
 
-        public synchronized void add(Student s) {
-            if (exists(s.getRollNo())) {
-                throw new IllegalArgumentException("Roll No already exists: " + s.getRollNo());
-            }
-            validate(s);
-            byRoll.put(s.getRollNo(), s);
+        public Map<String, ShardStats> stats() throws IOException {
+            return scanAll(s -> new ShardStats(s.totalCount(),
+                    s.averageMarks() * s.totalCount(), s.lowestMarks(), s.highestMarks()));
         }
 
-        public synchronized void update(int originalRoll, Student updated) {
-            if (!exists(originalRoll)) throw new IllegalArgumentException("Original roll not found.");
-            if (updated.getRollNo() != originalRoll && exists(updated.getRollNo())) {
-                throw new IllegalArgumentException("New Roll No already exists: " + updated.getRollNo());
-            }
-            validate(updated);
-            // If roll changes, remove old key
-            if (updated.getRollNo() != originalRoll) {
-                byRoll.remove(originalRoll);
+        // Applies fn to every roster (null results are left out). Loaded rosters are read in place without
+        // counting as a use; the rest are read into a throwaway service, so one scan over hundreds of
+        // rosters neither evicts nor flushes the hot set.
+        private synchronized <T> Map<String, T> scanAll(java.util.function.Function<StudentService, T> fn) throws IOException {
+            Map<String, StudentService> hot = new HashMap<>();
+            for (Map.Entry<String, OpenRoster> e : loaded.entrySet()) hot.put(e.getKey(), e.getValue().service); // iteration keeps LRU order
+            Map<String, T> out = new TreeMap<>();
+            for (String name : rosterNames()) {
+                StudentService s = hot.get(name);
+                if (s == null) {
+                    s = new StudentService(ROSTER_CHANGE_LOG);
+                    new CSVStorage(dir.resolve(name + ".csv")).loadAll(s);
+                    scans++;
+                }
+                T result = fn.apply(s);
+                if (result != null) out.put(name, result);
             }
-            byRoll.put(updated.getRollNo(), updated);
+            return out;
         }
 
-        public synchronized void delete(int rollNo) {
-            byRoll.remove(rollNo);
+        public synchronized void flushAll() throws IOException {
+            for (OpenRoster r : loaded.values()) r.flush();
         }
 
-        public synchronized List<Student> list() {
-            return new ArrayList<>(byRoll.values());
+        public synchronized String status() {
+            long used = 0;
+            for (OpenRoster r : loaded.values()) used += r.footprint();
+            return "loaded=" + loaded.size() + " used~" + (used / 1024) + "KB budget=" + (budgetBytes / 1024)
+                    + "KB loads=" + loads + " evictions=" + evictions + " scans=" + scans + " " + loaded.keySet();
         }
 
-        public synchronized void clear() {
-            byRoll.clear();
+        @Override
+        public synchronized void close() throws IOException {
+            flushAll();
+            loaded.clear();
         }
 
-        private void validate(Student s) {
-            if (s.getName() == null || s.getName().trim().isEmpty()) throw new IllegalArgumentException("Name required.");
-            if (s.getRollNo() <= 0) throw new IllegalArgumentException("Roll No must be > 0.");
-            if (s.getClassName() == null || s.getClassName().trim().isEmpty()) throw new IllegalArgumentException("Class required.");
-            if (s.getMarks() < 0 || s.getMarks() > 100) throw new IllegalArgumentException("Marks must be between 0 and 100.");
-            if (s.getEmail() != null && !s.getEmail().trim().isEmpty() && !s.getEmail().contains("@"))
-                throw new IllegalArgumentException("Invalid email.");
-            if (s.getPhone() != null && !s.getPhone().trim().isEmpty()) {
-                String p = s.getPhone().replaceAll("\\D", "");
-                if (p.length() < 7) throw new IllegalArgumentException("Invalid phone.");
+        private void enforceBudget(OpenRoster keep) throws IOException {
+            long used = 0;
+            for (OpenRoster r : loaded.values()) used += r.footprint();
+            Iterator<OpenRoster> lru = loaded.values().iterator();
+            while (used > budgetBytes && lru.hasNext()) {
+                OpenRoster r = lru.next();
+                if (r == keep || r.pins > 0) continue;
+                r.flush();
+                used -= r.footprint();
+                lru.remove();
+                evictions++;
             }
         }
 
-        // ---- Stats ----
-        public synchronized int totalCount() { return byRoll.size(); }
-        public synchronized double averageMarks() {
-            if (byRoll.isEmpty()) return 0;
-            double sum = 0;
-            for (Student s : byRoll.values()) sum += s.getMarks();
-            return sum / byRoll.size();
+        private static final class OpenRoster {
+            final CSVStorage storage;
+            final StudentService service = new StudentService(ROSTER_CHANGE_LOG);
+            volatile boolean dirty = false;
+            volatile boolean measured = false;
+            long savedHistory = 0; // history version last written (exam writes fire no mutation listener)
+            long measuredHistory = 0;
+            long bytes = 0;
+            int pins = 0;
+
+            OpenRoster(CSVStorage storage) {
+                this.storage = storage;
+                service.addMutationListener(c -> { dirty = true; measured = false; });
+            }
+
+            void flush() throws IOException {
+                long historyVersion = service.getHistoryVersion();
+                if (!dirty && historyVersion == savedHistory) return;
+                storage.saveAll(service);
+                dirty = false;
+                savedHistory = historyVersion;
+            }
+
+            long footprint() {
+                long historyVersion = service.getHistoryVersion();
+                if (!measured || historyVersion != measuredHistory) {
+                    measuredHistory = historyVersion;
+                    long total = 512 + service.indexBytes(); // service, maps, change log, rank indexes, history
+                    for (Student s : service.list()) total += estimateBytes(s);
+                    bytes = total;
+                    measured = true;
+                }
+                return bytes;
+            }
         }
-        public synchronized double highestMarks() {
-            double max = 0;
-            for (Student s : byRoll.values()) max = Math.max(max, s.getMarks());
-            return max;
+
+        // Rough heap cost of one loaded student: object, four strings, map entry, boxed key.
+        static long estimateBytes(Student s) {
+            return 200 + 2L * (len(s.getName()) + len(s.getClassName()) + len(s.getPhone()) + len(s.getEmail()));
         }
-        public synchronized double lowestMarks() {
-            if (byRoll.isEmpty()) return 0;
-            double min = 101;
-            for (Student s : byRoll.values()) min = Math.min(min, s.getMarks());
-            return (min == 101) ? 0 : min;
+
+        private static int len(String s) { return s == null ? 0 : s.length(); }
+    }
+
+    static void runWorkspaceConsole(RosterWorkspace ws) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        System.out.println("Commands: rosters | list <roster> | add <roster> <csv row> | delete <roster> <roll>"
+                + " | search <text> | find <roll> | stats | flush | status | quit");
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty()) continue;
+            String[] cmd = line.split("\\s+", 3);
+            try {
+                switch (cmd[0]) {
+                    case "rosters": System.out.println(ws.rosterNames()); break;
+                    case "list":
+                        for (Student s : ws.withRoster(cmd[1], StudentService::list)) {
+                            System.out.println(s.getRollNo() + "," + s.getName() + "," + s.getClassName() + "," + s.getMarks());
+                        }
+                        break;
+                    case "add":
+                        ws.withRoster(cmd[1], s -> { s.add(CSVStorage.parseRow(cmd[2])); return null; });
+                        System.out.println("ok");
+                        break;
+                    case "delete":
+                        ws.withRoster(cmd[1], s -> { s.delete(Integer.parseInt(cmd[2].trim())); return null; });
+                        System.out.println("ok");
+                        break;
+                    case "search":
+                        for (Map.Entry<String, List<Student>> e : ws.search(line.substring(6).trim()).entrySet()) {
+                            for (Student s : e.getValue()) System.out.println(e.getKey() + ": " + s.getRollNo() + "," + s.getName());
+                        }
+                        break;
+                    case "find":
+                        for (Map.Entry<String, Student> e : ws.findRoll(Integer.parseInt(cmd[1])).entrySet()) {
+                            System.out.println(e.getKey() + ": " + e.getValue().getName());
+                        }
+                        break;
+                    case "stats":
+                        for (Map.Entry<String, ShardStats> e : ws.stats().entrySet()) {
+                            ShardStats st = e.getValue();
+                            System.out.printf("%s: total=%d avg=%.2f high=%.2f low=%.2f%n", e.getKey(),
+                                    st.getCount(), st.average(), st.getHighest(), st.getLowest());
+                        }
+                        break;
+                    case "flush": ws.flushAll(); System.out.println("ok"); break;
+                    case "status": System.out.println(ws.status()); break;
+                    case "quit": return;
+                    default: System.out.println("Unknown command: " + cmd[0]);
+                }
+            } catch (Exception ex) {
+                System.out.println("error: " + ex.getMessage());
+            }
         }
-        public synchronized double passRate(double passThreshold) {
-            if (byRoll.isEmpty()) return 0;
-            int pass = 0;
-            for (Student s : byRoll.values()) if (s.getMarks() >= passThreshold) pass++;
-            return (pass * 100.0) / byRoll.size();
+    }
+
+    // ---------- Attendance Check-in (lock-free ring -> validate -> dedupe -> batched durable log) ----------
+    // Bounded multi-producer ring of (roll, time) pairs in primitive arrays. A slot's sequence number says
+    // whether it is free for the producer at that position or filled for the consumer (Vyukov's scheme).
+    public static class CheckInRing {
+        private final int mask;
+        private final int[] rolls;
+        private final long[] times;
+        private final AtomicLongArray sequence;
+        private final AtomicLong tail = new AtomicLong();
+        private long head = 0; // single consumer
+
+        public CheckInRing(int capacity) {
+            if (capacity < 2 || Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("Ring capacity must be a power of two >= 2.");
+            mask = capacity - 1;
+            rolls = new int[capacity];
+            times = new long[capacity];
+            sequence = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; i++) sequence.set(i, i);
+        }
+
+        // Never blocks: returns false when the ring is full so the gate reader can retry or signal
+        public boolean offer(int roll, long at) {
+            long pos = tail.get();
+            int slot;
+            while (true) {
+                slot = (int) (pos & mask);
+                long diff = sequence.get(slot) - pos;
+                if (diff == 0) {
+                    if (tail.compareAndSet(pos, pos + 1)) break;
+                    pos = tail.get();
+                } else if (diff < 0) {
+                    return false;
+                } else {
+                    pos = tail.get();
+                }
+            }
+            rolls[slot] = roll;
+            times[slot] = at;
+            sequence.lazySet(slot, pos + 1); // publishes the slot after its fields are written
+            return true;
+        }
+
+        // Consumer only: moves up to max events into the arrays, returns how many
+        int drain(int[] rollOut, long[] timeOut, int max) {
+            int n = 0;
+            while (n < max) {
+                int slot = (int) (head & mask);
+                if (sequence.get(slot) != head + 1) break;
+                rollOut[n] = rolls[slot];
+                timeOut[n] = times[slot];
+                sequence.lazySet(slot, head + mask + 1);
+                head++;
+                n++;
+            }
+            return n;
         }
+
+        public int size() { return (int) Math.max(0, tail.get() - head); }
+        public int capacity() { return mask + 1; }
     }
 
-    // ---------- Table Model ----------
-    public static class StudentTableModel extends AbstractTableModel {
-        private final String[] cols = {"Roll No", "Name", "Class", "Marks", "Phone", "Email"};
-        private final Class<?>[] types = {Integer.class, String.class, String.class, Double.class, String.class, String.class};
-        private final List<Student> data;
+    // Single consumer thread: validates rolls against the roster in one lock hold per batch, drops repeat
+    // scans inside the window, appends the batch to the log in one write (+fsync), then updates counts.
+    // A session is one calendar day: each day has its own log, attendance-YYYY-MM-DD.log in logDir, and
+    // present counts start from zero at midnight. Restarting replays only today's log.
+    public static class CheckInPipeline implements Closeable {
+        private final StudentService roster;
+        private final Path logDir;
+        private final long windowMillis;
+        private final int batchSize;
+        private final boolean fsync;
+        private final CheckInRing ring;
+        // roll -> slot in lastSeenAt (time of the last accepted scan); a roll with a slot is present
+        private final IntIntMap slotOfRoll = new IntIntMap(1024);
+        private long[] lastSeenAt = new long[1024];
+        private final Map<String, AtomicInteger> presentByClass = new ConcurrentHashMap<>();
+        private final LongAdder rejectedFull = new LongAdder();
+        private volatile long received, accepted, duplicates, unknown, batches;
+        private volatile boolean running;
+        private volatile IOException failure; // log write error that stopped ingestion
+        private volatile LocalDate day;
+        private long dayEnd;
+        private FileChannel log;
+        private Thread consumer;
 
-        public StudentTableModel(List<Student> backing) {
-            this.data = backing;
+        public CheckInPipeline(StudentService roster, Path logDir, long windowMillis, int ringCapacity, int batchSize, boolean fsync) {
+            if (batchSize <= 0) throw new IllegalArgumentException("Batch size must be > 0.");
+            this.roster = roster;
+            this.logDir = logDir;
+            this.windowMillis = windowMillis;
+            this.batchSize = batchSize;
+            this.fsync = fsync;
+            this.ring = new CheckInRing(ringCapacity);
         }
 
-        @Override public int getRowCount() { return data.size(); }
-        @Override public int getColumnCount() { return cols.length; }
-        @Override public String getColumnName(int column) { return cols[column]; }
-        @Override public Class<?> getColumnClass(int columnIndex) { return types[columnIndex]; }
-        @Override public boolean isCellEditable(int rowIndex, int columnIndex) { return false; }
+        public Path logFile(LocalDate date) { return logDir.resolve("attendance-" + date + ".log"); }
+        public LocalDate getSessionDay() { return day; }
+        // Non-null once a log write failed; from then on check-ins are rejected
+        public IOException getFailure() { return failure; }
 
-        @Override
-        public Object getValueAt(int rowIndex, int columnIndex) {
-            Student s = data.get(rowIndex);
-            switch (columnIndex) {
-                case 0: return s.getRollNo();
-                case 1: return s.getName();
-                case 2: return s.getClassName();
-                case 3: return s.getMarks();
-                case 4: return s.getPhone();
-                case 5: return s.getEmail();
-                default: return null;
+        // Rebuilds today's present counts and dedupe window from today's log, then starts consuming
+        public synchronized void start() throws IOException {
+            if (running) return;
+            Files.createDirectories(logDir);
+            openSession(LocalDate.now());
+            Path file = logFile(day);
+            try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String[] parts = CSVStorage.parseCSV(line);
+                    if (parts.length < 3) continue;
+                    int roll;
+                    long at;
+                    try {
+                        roll = Integer.parseInt(parts[1]);
+                        at = Long.parseLong(parts[0]);
+                    } catch (NumberFormatException ex) {
+                        continue; // a damaged record must not make the rest of the day unreadable
+                    }
+                    if (roll > 0 && markSeen(roll, at)) count(CSVStorage.unescape(parts[2]));
+                }
             }
+            running = true;
+            consumer = new Thread(this::consume, "checkin-ingest");
+            consumer.setDaemon(true);
+            consumer.start();
         }
 
-        public Student getAt(int row) { return data.get(row); }
-        public void refresh() {
-            fireTableDataChanged();
+        public boolean checkIn(int roll) { return checkIn(roll, System.currentTimeMillis()); }
+
+        // False when the ring is full or ingestion is not running (not started, closing, or failed)
+        public boolean checkIn(int roll, long at) {
+            if (!running) return false;
+            if (ring.offer(roll, at)) return true;
+            rejectedFull.increment();
+            return false;
         }
-    }
 
-    // ---------- CSV Persistence ----------
-    public static class CSVStorage {
-        private final Path file;
+        // Opens (appending) the log of the given day and forgets the previous day's state
+        private void openSession(LocalDate date) throws IOException {
+            if (log != null) {
+                if (fsync) log.force(false);
+                log.close();
+            }
+            slotOfRoll.clear();
+            presentByClass.clear();
+            ZoneId zone = ZoneId.systemDefault();
+            dayEnd = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+            day = date;
+            log = FileChannel.open(logFile(date), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            dropTornTail(log);
+            log.position(log.size());
+        }
 
-        public CSVStorage(String filename) {
-            this.file = Paths.get(filename);
+        // A crash can leave a half-written last record; cut the file back to its last newline so the next
+        // append starts on a fresh line instead of gluing onto it
+        private static void dropTornTail(FileChannel ch) throws IOException {
+            ByteBuffer buf = ByteBuffer.allocate(4096);
+            long pos = ch.size();
+            while (pos > 0) {
+                int n = (int) Math.min(buf.capacity(), pos);
+                long from = pos - n;
+                buf.clear().limit(n);
+                while (buf.hasRemaining()) {
+                    if (ch.read(buf, from + buf.position()) < 0) break;
+                }
+                for (int i = buf.position() - 1; i >= 0; i--) {
+                    if (buf.get(i) == '\n') {
+                        ch.truncate(from + i + 1);
+                        return;
+                    }
+                }
+                pos = from;
+            }
+            ch.truncate(0);
         }
 
-        public void save(List<Student> students) throws IOException {
-            List<String> out = new ArrayList<>();
-            out.add("rollNo,name,class,marks,phone,email"); // header
-            for (Student s : students) {
-                out.add(String.format("%d,%s,%s,%.2f,%s,%s",
-                        s.getRollNo(),
-                        escape(s.getName()),
-                        escape(s.getClassName()),
-                        s.getMarks(),
-                        escape(nvl(s.getPhone())),
-                        escape(nvl(s.getEmail()))));
+        private void consume() {
+            int[] rolls = new int[batchSize];
+            long[] times = new long[batchSize];
+            String[] classes = new String[batchSize];
+            StringBuilder out = new StringBuilder(batchSize * 32);
+            while (true) {
+                int n = ring.drain(rolls, times, batchSize);
+                try {
+                    // Roll over at midnight even when the gates are quiet, so counts restart for the new day
+                    if (System.currentTimeMillis() >= dayEnd) openSession(LocalDate.now());
+                    if (n == 0) {
+                        if (!running) return;
+                        LockSupport.parkNanos(200_000);
+                        continue;
+                    }
+                    processBatch(rolls, times, classes, n, out);
+                } catch (IOException ex) {
+                    failure = ex;
+                    running = false;
+                    return;
+                }
             }
-            Files.write(file, out, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
         }
 
-        public List<Student> load() throws IOException {
-            List<Student> list = new ArrayList<>();
-            if (!Files.exists(file)) return list;
-            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
-            boolean headerSkipped = false;
-            for (String line : lines) {
-                if (!headerSkipped) { headerSkipped = true; continue; }
-                if (line.trim().isEmpty()) continue;
-                String[] parts = parseCSV(line);
-                // Expected 6 fields
-                int roll = Integer.parseInt(parts[0].trim());
-                String name = unescape(parts[1]);
-                String cls = unescape(parts[2]);
-                double marks = Double.parseDouble(parts[3].trim());
-                String phone = parts.length > 4 ? unescape(parts[4]) : "";
-                String email = parts.length > 5 ? unescape(parts[5]) : "";
-                list.add(new Student(name, roll, cls, marks, phone, email));
+        private void processBatch(int[] rolls, long[] times, String[] classes, int n, StringBuilder out) throws IOException {
+            roster.classesOf(rolls, n, classes);
+            out.setLength(0);
+            int kept = 0, dup = 0, bad = 0;
+            for (int i = 0; i < n; i++) {
+                if (classes[i] == null) { bad++; continue; }
+                int slot = slotOfRoll.get(rolls[i], -1);
+                if (slot >= 0 && times[i] - lastSeenAt[slot] < windowMillis) { dup++; continue; }
+                // Window updated right away so a repeat later in this same batch is caught too
+                markSeen(rolls[i], times[i]);
+                out.append(times[i]).append(',').append(rolls[i]).append(',').append(CSVStorage.escape(classes[i])).append('\n');
+                if (slot < 0) classes[kept++] = classes[i]; // first scan: counts once logged
             }
-            return list;
+            if (out.length() > 0) {
+                // One append (and at most one fsync) per batch: the log is durable before counts move
+                ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(out));
+                while (bytes.hasRemaining()) log.write(bytes);
+                if (fsync) log.force(false);
+                for (int i = 0; i < kept; i++) count(classes[i]);
+                batches++;
+            }
+            received += n;
+            accepted += n - dup - bad;
+            duplicates += dup;
+            unknown += bad;
         }
 
-        private static String nvl(String s) { return s == null ? "" : s; }
+        // Records the scan time; returns true on the roll's first scan of the session
+        private boolean markSeen(int roll, long at) {
+            int slot = slotOfRoll.get(roll, -1);
+            boolean first = slot < 0;
+            if (first) {
+                slot = slotOfRoll.size();
+                if (slot == lastSeenAt.length) lastSeenAt = Arrays.copyOf(lastSeenAt, slot * 2);
+                slotOfRoll.put(roll, slot);
+            }
+            lastSeenAt[slot] = at;
+            return first;
+        }
 
-        private static String escape(String s) {
-            if (s == null) return "";
-            boolean quote = s.contains(",") || s.contains("\"") || s.contains("\n");
-            String val = s.replace("\"", "\"\"");
-            return quote ? "\"" + val + "\"" : val;
+        private void count(String className) {
+            presentByClass.computeIfAbsent(className, k -> new AtomicInteger()).incrementAndGet();
         }
 
-        private static String unescape(String s) {
-            s = s.trim();
-            if (s.startsWith("\"") && s.endsWith("\"")) {
-                s = s.substring(1, s.length() - 1).replace("\"\"", "\"");
+        public Map<String, Integer> presentByClass() {
+            Map<String, Integer> out = new TreeMap<>();
+            for (Map.Entry<String, AtomicInteger> e : presentByClass.entrySet()) out.put(e.getKey(), e.getValue().get());
+            return out;
+        }
+
+        public int presentCount(String className) {
+            AtomicInteger n = presentByClass.get(className);
+            return n == null ? 0 : n.get();
+        }
+
+        public long getAccepted() { return accepted; }
+        public long getDuplicates() { return duplicates; }
+        public long getUnknown() { return unknown; }
+        public long getRejectedFull() { return rejectedFull.sum(); }
+
+        public String status() {
+            return String.format("day=%s received=%d accepted=%d duplicates=%d unknown=%d ringFull=%d batches=%d backlog=%d/%d",
+                    day, received, accepted, duplicates, unknown, rejectedFull.sum(), batches, ring.size(), ring.capacity())
+                    + (failure == null ? "" : " STOPPED: " + failure);
+        }
+
+        // Drains whatever is already in the ring before closing the log
+        @Override
+        public void close() throws IOException {
+            Thread t;
+            synchronized (this) {
+                if (log == null || !log.isOpen()) return;
+                running = false;
+                t = consumer;
+            }
+            if (t != null) { // null when start() failed before the consumer was running
+                try {
+                    t.join();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            try {
+                if (fsync && failure == null) log.force(false);
+            } finally {
+                log.close();
             }
-            return s;
         }
+    }
 
-        private static String[] parseCSV(String line) {
-            List<String> tokens = new ArrayList<>();
-            StringBuilder sb = new StringBuilder();
-            boolean inQuotes = false;
-            for (int i = 0; i < line.length(); i++) {
-                char c = line.charAt(i);
-                if (c == '\"') {
-                    inQuotes = !inQuotes;
-                } else if (c == ',' && !inQuotes) {
-                    tokens.add(sb.toString().trim());
-                    sb.setLength(0);
-                } else {
-                    sb.append(c);
+    // Local stand-in for gate readers: bursts of scans at a target rate from several threads, mixing in
+    // repeat scans of students already seen and rolls that are not on the roster.
+    public static class CheckInGenerator {
+        private final CheckInPipeline pipeline;
+        private final int[] rolls;
+        private final int threads;
+        private final double repeatRate, unknownRate;
+
+        public CheckInGenerator(CheckInPipeline pipeline, int[] rolls, int threads, double repeatRate, double unknownRate) {
+            if (rolls.length == 0) throw new IllegalArgumentException("Roster is empty.");
+            this.pipeline = pipeline;
+            this.rolls = rolls;
+            this.threads = threads;
+            this.repeatRate = repeatRate;
+            this.unknownRate = unknownRate;
+        }
+
+        // Emits ratePerSecond scans in 10 ms ticks; returns how many the ring accepted
+        public long run(int ratePerSecond, long millis) throws InterruptedException {
+            LongAdder offered = new LongAdder();
+            int maxRoll = Arrays.stream(rolls).max().getAsInt();
+            Thread[] gates = new Thread[threads];
+            long end = System.currentTimeMillis() + millis;
+            for (int g = 0; g < threads; g++) {
+                Random rnd = new Random(17L * g + 1);
+                double perTick = ratePerSecond / 100.0 / threads;
+                gates[g] = new Thread(() -> {
+                    int[] recent = new int[64];
+                    int seen = 0;
+                    double owed = 0;
+                    for (long tick = System.currentTimeMillis(); tick < end; tick += 10) {
+                        owed += perTick;
+                        for (; owed >= 1; owed--) {
+                            int roll;
+                            double p = rnd.nextDouble();
+                            if (p < unknownRate) roll = maxRoll + 1 + rnd.nextInt(1000);
+                            else if (p < unknownRate + repeatRate && seen > 0) roll = recent[rnd.nextInt(Math.min(seen, recent.length))];
+                            else recent[seen++ & 63] = roll = rolls[rnd.nextInt(rolls.length)];
+                            if (pipeline.checkIn(roll)) offered.increment();
+                        }
+                        long sleep = tick + 10 - System.currentTimeMillis();
+                        if (sleep > 0) {
+                            try { Thread.sleep(sleep); } catch (InterruptedException ex) { return; }
+                        }
+                    }
+                }, "gate-" + g);
+                gates[g].start();
+            }
+            for (Thread t : gates) t.join();
+            return offered.sum();
+        }
+    }
+
+    // ---------- Headless console (drives a primary or replica from stdin) ----------
+    static void runConsole(StudentService service, CSVStorage storage, boolean writable,
+                           java.util.function.Supplier<String> status) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        System.out.println(writable
+                ? "Commands: add <csv row> | update <roll> <csv row> | delete <roll> | list | query <filter> | count | rank <roll> | top <n> [class] | cutoff <pct>"
+                + " | exam <name> [term] | record <roll> <exam> <marks> | history <roll> | examstats <exam>"
+                + " | status | export <cursor|-> [csv|ndjson] | save | quit"
+                : "Commands: list | query <filter> | count | rank <roll> | top <n> [class] | cutoff <pct>"
+                + " | history <roll> | examstats <exam> | status | export <cursor|-> [csv|ndjson] | quit (read-only replica)");
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty()) continue;
+            String[] cmd = line.split("\\s+", 2);
+            try {
+                switch (cmd[0]) {
+                    case "list":
+                        for (Student s : service.list()) {
+                            System.out.println(s.getRollNo() + "," + s.getName() + "," + s.getClassName() + "," + s.getMarks());
+                        }
+                        break;
+                    case "query":
+                        for (Student s : service.query(cmd[1])) {
+                            System.out.println(s.getRollNo() + "," + s.getName() + "," + s.getClassName() + "," + s.getMarks());
+                        }
+                        break;
+                    case "count": System.out.println(service.totalCount()); break;
+                    case "rank": {
+                        int roll = Integer.parseInt(cmd[1].trim());
+                        System.out.printf("rank=%d classRank=%d percentile=%.2f%n",
+                                service.rankOf(roll), service.classRankOf(roll), service.percentileOf(roll));
+                        break;
+                    }
+                    case "top": {
+                        String[] rest = cmd[1].trim().split("\\s+", 2);
+                        int n = Integer.parseInt(rest[0]);
+                        List<Student> top = rest.length > 1 ? service.topN(rest[1], n) : service.topN(n);
+                        for (Student s : top) System.out.println(s.getRollNo() + "," + s.getName() + "," + s.getClassName() + "," + s.getMarks());
+                        break;
+                    }
+                    case "cutoff": System.out.println(service.percentileCutoff(Double.parseDouble(cmd[1].trim()))); break;
+                    case "exam": {
+                        if (!writable) throw new IllegalStateException("Replica is read-only.");
+                        String[] rest = cmd[1].trim().split("\\s+", 2);
+                        service.addExam(rest[0], rest.length > 1 ? rest[1] : "");
+                        System.out.println("ok");
+                        break;
+                    }
+                    case "record": {
+                        if (!writable) throw new IllegalStateException("Replica is read-only.");
+                        String[] rest = cmd[1].trim().split("\\s+");
+                        service.recordMarks(Integer.parseInt(rest[0]), rest[1], Double.parseDouble(rest[2]));
+                        System.out.println("ok");
+                        break;
+                    }
+                    case "history": {
+                        int roll = Integer.parseInt(cmd[1].trim());
+                        System.out.printf("%s latest=%.2f best=%.2f trend=%.2f%n", Arrays.toString(service.marksHistory(roll)),
+                                service.latestMarks(roll), service.bestMarks(roll), service.marksTrend(roll));
+                        break;
+                    }
+                    case "examstats": {
+                        ShardStats st = service.examStats(cmd[1].trim());
+                        System.out.printf("sat=%d avg=%.2f high=%.2f low=%.2f pass=%.2f%%%n", st.getCount(), st.average(),
+                                st.getHighest(), st.getLowest(), service.examPassRate(cmd[1].trim(), 40.0));
+                        break;
+                    }
+                    case "status": System.out.println(status.get()); break;
+                    case "export": {
+                        String[] rest = cmd[1].trim().split("\\s+");
+                        ChangeFeed.Format format = rest.length > 1 ? ChangeFeed.Format.valueOf(rest[1].toUpperCase()) : ChangeFeed.Format.CSV;
+                        Writer w = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+                        ChangeFeed.export(service, rest[0], format, w);
+                        w.flush();
+                        break;
+                    }
+                    case "quit": return;
+                    case "add":
+                        if (!writable) throw new IllegalStateException("Replica is read-only.");
+                        service.add(CSVStorage.parseRow(cmd[1]));
+                        System.out.println("ok");
+                        break;
+                    case "update": {
+                        if (!writable) throw new IllegalStateException("Replica is read-only.");
+                        String[] rest = cmd[1].split("\\s+", 2);
+                        service.update(Integer.parseInt(rest[0]), CSVStorage.parseRow(rest[1]));
+                        System.out.println("ok");
+                        break;
+                    }
+                    case "delete":
+                        if (!writable) throw new IllegalStateException("Replica is read-only.");
+                        service.delete(Integer.parseInt(cmd[1].trim()));
+                        System.out.println("ok");
+                        break;
+                    case "save":
+                        if (!writable) throw new IllegalStateException("Replica is read-only.");
+                        storage.saveAll(service);
+                        System.out.println("ok");
+                        break;
+                    default:
+                        System.out.println("Unknown command: " + cmd[0]);
                 }
+            } catch (Exception ex) {
+                System.out.println("error: " + ex.getMessage());
             }
-            tokens.add(sb.toString().trim());
-            return tokens.toArray(new String[0]);
         }
     }
 
@@ -349,10 +3852,11 @@ public class StudentManagementApp {
 
     // ---------- Main Frame (UI) ----------
     public static class MainFrame extends JFrame {
-        private final StudentService service = new StudentService();
-        private final StudentTableModel model = new StudentTableModel(service.list());
-        private final JTable table = new JTable(model);
-        private final TableRowSorter<TableModel> sorter = new TableRowSorter<>(model);
+        private final StudentService service;
+        private final StudentTableModel model;
+        private final JTable table;
+        private final TableRowSorter<TableModel> sorter;
+        private final boolean replica;
         private final JTextField tfSearch = new JTextField();
         private final JLabel lblTotal = new JLabel("0");
         private final JLabel lblAvg = new JLabel("0.00");
@@ -360,10 +3864,29 @@ public class StudentManagementApp {
         private final JLabel lblLow = new JLabel("0.00");
         private final JLabel lblPass = new JLabel("0.00%");
         private final DecimalFormat df2 = new DecimalFormat("#0.00");
+        private final double[] shownStats = {Double.NaN, Double.NaN, Double.NaN, Double.NaN};
+        private int shownTotal = -1;
         private final CSVStorage storage = new CSVStorage("students.csv");
+        private final JProgressBar loadProgress = new JProgressBar(0, 100);
+        private final JButton btnReload = new JButton("? Reload CSV");
+        private final List<JButton> writeActions = new ArrayList<>(); // off on a replica and while loading
+        private boolean loading = false;
+        private boolean loadFailed = false;
+        private static final int LOAD_CHUNK = 2000;
 
         public MainFrame() {
+            this(new StudentService(), false);
+        }
+
+        // A replica frame shows a read-only view of a service fed by ReplicationReplica.
+        public MainFrame(StudentService service, boolean replica) {
             super("? Student Management System  Java Swing (Realtime)");
+            this.service = service;
+            this.replica = replica;
+            this.model = new StudentTableModel(service.list(), service);
+            this.table = new JTable(model);
+            this.sorter = new TableRowSorter<>(model);
+            if (replica) setTitle(getTitle() + " [read-only replica]");
             setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
             setLayout(new BorderLayout(12,12));
             getRootPane().setBorder(new EmptyBorder(10,10,10,10));
@@ -371,7 +3894,7 @@ public class StudentManagementApp {
             // Top: Search + Buttons
             JPanel top = new JPanel(new BorderLayout(10,10));
             JPanel searchPanel = new JPanel(new BorderLayout(6,6));
-            searchPanel.add(new JLabel("? Search (Name/Roll/Class/Email): "), BorderLayout.WEST);
+            searchPanel.add(new JLabel("? Search (text, or a filter like marks < 40 and class = \"10-A\"): "), BorderLayout.WEST);
             searchPanel.add(tfSearch, BorderLayout.CENTER);
 
             JPanel btns = new JPanel(new FlowLayout(FlowLayout.RIGHT, 8, 0));
@@ -379,10 +3902,11 @@ public class StudentManagementApp {
             JButton btnEdit = new JButton("? Edit");
             JButton btnDelete = new JButton("? Delete");
             JButton btnClear = new JButton("? Clear All");
-            JButton btnReload = new JButton("? Reload CSV");
             JButton btnSave = new JButton("? Save CSV");
             btns.add(btnAdd); btns.add(btnEdit); btns.add(btnDelete);
             btns.add(btnClear); btns.add(btnReload); btns.add(btnSave);
+            writeActions.addAll(Arrays.asList(btnAdd, btnEdit, btnDelete, btnClear, btnReload, btnSave));
+            setWriteActionsEnabled(true);
 
             top.add(searchPanel, BorderLayout.CENTER);
             top.add(btns, BorderLayout.EAST);
@@ -392,8 +3916,10 @@ public class StudentManagementApp {
             table.setRowSorter(sorter);
             table.setFillsViewportHeight(true);
             table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
-            table.setAutoCreateRowSorter(true);
             table.setRowHeight(24);
+            table.setDefaultRenderer(String.class, new CachedCellRenderer(model, SwingConstants.LEFT));
+            table.setDefaultRenderer(Integer.class, new CachedCellRenderer(model, SwingConstants.RIGHT));
+            table.setDefaultRenderer(Double.class, new CachedCellRenderer(model, SwingConstants.RIGHT));
             ((DefaultRowSorter<?, ?>) sorter).setSortsOnUpdates(true);
             JScrollPane sp = new JScrollPane(table);
             add(sp, BorderLayout.CENTER);
@@ -406,19 +3932,32 @@ public class StudentManagementApp {
             stats.add(card("Highest", lblHigh));
             stats.add(card("Lowest", lblLow));
             stats.add(card("Pass Rate (>=40)", lblPass));
-            add(stats, BorderLayout.SOUTH);
+            loadProgress.setStringPainted(true);
+            loadProgress.setVisible(false);
+            JPanel south = new JPanel(new BorderLayout(6,6));
+            south.add(loadProgress, BorderLayout.NORTH);
+            south.add(stats, BorderLayout.CENTER);
+            add(south, BorderLayout.SOUTH);
 
             // Listeners
             tfSearch.getDocument().addDocumentListener(new DocumentListener() {
                 private void updateFilter() {
                     String text = tfSearch.getText().trim().toLowerCase();
+                    StudentFilter query = compileQuery(tfSearch.getText().trim());
                     if (text.isEmpty()) {
                         sorter.setRowFilter(null);
+                    } else if (query != null) {
+                        sorter.setRowFilter(new RowFilter<TableModel, Integer>() {
+                            @Override
+                            public boolean include(Entry<? extends TableModel, ? extends Integer> entry) {
+                                return query.test(model.getAt(entry.getIdentifier()));
+                            }
+                        });
                     } else {
                         sorter.setRowFilter(new RowFilter<TableModel, Integer>() {
                             @Override
                             public boolean include(Entry<? extends TableModel, ? extends Integer> entry) {
-                                for (int i = 0; i < entry.getValueCount(); i++) {
+                                for (int i = 0; i < StudentTableModel.DATA_COLUMNS; i++) {
                                     Object v = entry.getValue(i);
                                     if (v != null && v.toString().toLowerCase().contains(text)) return true;
                                 }
@@ -440,12 +3979,24 @@ public class StudentManagementApp {
             btnReload.addActionListener(e -> onReload());
             btnSave.addActionListener(e -> onSave());
 
-            // Load CSV on start
-            onReloadIfExists();
+            // Rank cells only need a repaint, unless the table is sorted by them
+            model.onRanksChanged(() -> {
+                for (RowSorter.SortKey k : sorter.getSortKeys()) {
+                    if (k.getColumn() >= StudentTableModel.DATA_COLUMNS && k.getSortOrder() != SortOrder.UNSORTED) {
+                        sorter.allRowsChanged();
+                        return;
+                    }
+                }
+                table.repaint();
+            });
+
+            // Table and stats follow the service's change feed instead of refreshing by hand
+            service.addChangeListener(model);
+            service.addChangeListener(batch -> updateStatsRealtime());
 
-            // Sample data if empty
-            if (service.totalCount() == 0) {
-                seedSample();
+            // Load CSV after the frame is on screen (a replica gets its roster from the primary instead)
+            if (!replica) {
+                SwingUtilities.invokeLater(() -> loadInBackground(false));
             }
 
             updateStatsRealtime();
@@ -455,7 +4006,9 @@ public class StudentManagementApp {
             // Save on window close
             addWindowListener(new WindowAdapter() {
                 @Override public void windowClosing(WindowEvent e) {
-                    try { storage.save(service.list()); } catch (Exception ignored) {}
+                    // Never overwrite the CSV with a roster that is partially loaded
+                    if (replica || loading || loadFailed) return;
+                    try { storage.saveAll(service); } catch (Exception ignored) {}
                 }
             });
         }
@@ -476,6 +4029,7 @@ public class StudentManagementApp {
         }
 
         private void onAdd() {
+            if (loading) return;
             StudentFormDialog dlg = new StudentFormDialog(this, "Add Student", null);
             dlg.setVisible(true);
             if (dlg.isConfirmed()) {
@@ -483,8 +4037,6 @@ public class StudentManagementApp {
                 if (s != null) {
                     try {
                         service.add(s);
-                        model.refresh();
-                        updateStatsRealtime();
                     } catch (Exception ex) {
                         JOptionPane.showMessageDialog(this, ex.getMessage(), "Add Failed", JOptionPane.ERROR_MESSAGE);
                     }
@@ -496,6 +4048,7 @@ public class StudentManagementApp {
         }
 
         private void onEdit() {
+            if (loading) return;
             int viewRow = table.getSelectedRow();
             if (viewRow < 0) {
                 JOptionPane.showMessageDialog(this, "Select a student to edit.", "No Selection", JOptionPane.WARNING_MESSAGE);
@@ -512,8 +4065,6 @@ public class StudentManagementApp {
                 if (s != null) {
                     try {
                         service.update(originalRoll, s);
-                        model.refresh();
-                        updateStatsRealtime();
                     } catch (Exception ex) {
                         JOptionPane.showMessageDialog(this, ex.getMessage(), "Update Failed", JOptionPane.ERROR_MESSAGE);
                     }
@@ -524,6 +4075,7 @@ public class StudentManagementApp {
         }
 
         private void onDelete() {
+            if (loading) return;
             int viewRow = table.getSelectedRow();
             if (viewRow < 0) {
                 JOptionPane.showMessageDialog(this, "Select a student to delete.", "No Selection", JOptionPane.WARNING_MESSAGE);
@@ -536,52 +4088,107 @@ public class StudentManagementApp {
                     "Confirm Delete", JOptionPane.YES_NO_OPTION);
             if (c == JOptionPane.YES_OPTION) {
                 service.delete(s.getRollNo());
-                model.refresh();
-                updateStatsRealtime();
             }
         }
 
         private void onClearAll() {
+            if (loading) return;
             if (service.totalCount() == 0) return;
             int c = JOptionPane.showConfirmDialog(this,
                     "This will remove ALL students. Continue?",
                     "Confirm Clear", JOptionPane.YES_NO_OPTION);
             if (c == JOptionPane.YES_OPTION) {
                 service.clear();
-                model.refresh();
-                updateStatsRealtime();
             }
         }
 
         private void onReload() {
-            try {
-                List<Student> loaded = storage.load();
-                service.clear();
-                for (Student s : loaded) service.add(s);
-                model.refresh();
-                updateStatsRealtime();
-                JOptionPane.showMessageDialog(this, "CSV reloaded successfully.", "Reload", JOptionPane.INFORMATION_MESSAGE);
-            } catch (FileNotFoundException fnf) {
+            if (!Files.exists(storage.getFile())) {
                 JOptionPane.showMessageDialog(this, "No CSV found to reload.", "Reload", JOptionPane.WARNING_MESSAGE);
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(this, "Reload failed: " + ex.getMessage(), "Reload Error", JOptionPane.ERROR_MESSAGE);
+                return;
             }
+            loadInBackground(true);
         }
 
-        private void onReloadIfExists() {
-            try {
-                if (Files.exists(Paths.get("students.csv"))) {
-                    List<Student> loaded = storage.load();
-                    service.clear();
-                    for (Student s : loaded) service.add(s);
-                    model.refresh();
+        // Streams the CSV into the service chunk by chunk off the EDT. The change bus hands each
+        // chunk to the table and stats, so search and stats cover whatever has arrived so far.
+        private void loadInBackground(boolean announce) {
+            if (loading) return;
+            if (!Files.exists(storage.getFile())) {
+                if (service.totalCount() == 0) seedSample();
+                return;
+            }
+            loading = true;
+            setWriteActionsEnabled(false);
+            loadProgress.setValue(0);
+            loadProgress.setString("Loading " + storage.getFile().getFileName() + "...");
+            loadProgress.setVisible(true);
+            SwingWorker<Integer, Void> worker = new SwingWorker<Integer, Void>() {
+                private volatile boolean applied = false; // some rows reached the roster
+
+                @Override
+                protected Integer doInBackground() throws Exception {
+                    if (announce) {
+                        // Reload: fill a staging service and swap it in at the end, so a bad row leaves the roster as it was
+                        StudentService staged = new StudentService(1);
+                        storage.loadChunks(LOAD_CHUNK, staged::addAll, pct -> setProgress(pct));
+                        staged.loadHistory(storage.historyFile());
+                        service.replaceWith(staged);
+                        return service.totalCount();
+                    }
+                    // First load: nothing to protect, so each chunk reaches the table as soon as it is parsed
+                    int[] count = {0};
+                    storage.loadChunks(LOAD_CHUNK, chunk -> {
+                        service.addAll(chunk);
+                        applied = true;
+                        count[0] += chunk.size();
+                    }, pct -> setProgress(pct));
+                    service.loadHistory(storage.historyFile());
+                    return count[0];
+                }
+
+                @Override
+                protected void done() {
+                    loading = false;
+                    loadProgress.setVisible(false);
+                    setWriteActionsEnabled(true);
+                    try {
+                        get();
+                        loadFailed = false;
+                        if (announce) {
+                            JOptionPane.showMessageDialog(MainFrame.this, "CSV reloaded successfully.", "Reload", JOptionPane.INFORMATION_MESSAGE);
+                        }
+                    } catch (Exception ex) {
+                        // A rejected reload keeps the previous roster, which may still be auto-saved
+                        if (!announce) loadFailed = true;
+                        Throwable cause = ex instanceof ExecutionException ? ex.getCause() : ex;
+                        JOptionPane.showMessageDialog(MainFrame.this, (announce ? "Reload failed: " : "Load failed: ") + cause.getMessage()
+                                        + (announce ? "\nThe roster was left as it was."
+                                           : applied ? "\nThe roster was only partly loaded; it will not be auto-saved."
+                                           : "\nNothing was loaded; the roster will not be auto-saved."),
+                                "Reload Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                    if (!announce && !loadFailed && service.totalCount() == 0) seedSample();
                 }
-            } catch (Exception ignored) { }
+            };
+            worker.addPropertyChangeListener(e -> {
+                if ("progress".equals(e.getPropertyName())) {
+                    int pct = (Integer) e.getNewValue();
+                    loadProgress.setValue(pct);
+                    loadProgress.setString("Loading " + storage.getFile().getFileName() + "... " + pct + "%");
+                }
+            });
+            worker.execute();
+        }
+
+        private void setWriteActionsEnabled(boolean on) {
+            for (JButton b : writeActions) b.setEnabled(on && !replica);
         }
 
         private void onSave() {
+            if (replica || loading) return; // the primary owns students.csv; a half-loaded roster is not saved
             try {
-                storage.save(service.list());
+                storage.saveAll(service);
                 JOptionPane.showMessageDialog(this, "Saved to students.csv", "Saved", JOptionPane.INFORMATION_MESSAGE);
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(this, "Save failed: " + ex.getMessage(), "Save Error", JOptionPane.ERROR_MESSAGE);
@@ -596,20 +4203,22 @@ public class StudentManagementApp {
                 service.add(new Student("Ishaan", 104, "10-B", 39.5, "9876522222", "ishaan@example.com"));
                 service.add(new Student("Meera", 105, "10-C", 64.0, "9876533333", "meera@example.com"));
             } catch (Exception ignored) {}
-            model.refresh();
         }
 
         private void updateStatsRealtime() {
             // Stats consider the CURRENT filtered view for a "realtime projection"
             // and also update with overall if desired. Here we show filtered-view stats.
             int rows = table.getRowCount();
-            lblTotal.setText(String.valueOf(rows));
+            if (rows != shownTotal) {
+                shownTotal = rows;
+                lblTotal.setText(String.valueOf(rows));
+            }
 
             double sum = 0, hi = 0, lo = 101;
             int pass = 0;
             for (int i = 0; i < rows; i++) {
                 int modelRow = table.convertRowIndexToModel(i);
-                double m = (double) model.getValueAt(modelRow, 3);
+                double m = model.getAt(modelRow).getMarks();
                 sum += m;
                 hi = Math.max(hi, m);
                 lo = Math.min(lo, m);
@@ -618,18 +4227,251 @@ public class StudentManagementApp {
             double avg = rows == 0 ? 0 : sum / rows;
             if (lo == 101) lo = 0;
 
-            lblAvg.setText(df2.format(avg));
-            lblHigh.setText(df2.format(hi));
-            lblLow.setText(df2.format(lo));
-            lblPass.setText(df2.format(rows == 0 ? 0 : (pass * 100.0 / rows)) + "%");
+            showStat(lblAvg, 0, avg, "");
+            showStat(lblHigh, 1, hi, "");
+            showStat(lblLow, 2, lo, "");
+            showStat(lblPass, 3, rows == 0 ? 0 : (pass * 100.0 / rows), "%");
+        }
+
+        // Text that parses as a filter expression is used as one; anything else is a plain substring search
+        private StudentFilter compileQuery(String text) {
+            if (text.isEmpty()) return null;
+            try {
+                StudentFilter f = StudentFilter.compile(text);
+                tfSearch.setToolTipText("Filter: " + f);
+                return f;
+            } catch (IllegalArgumentException ex) {
+                tfSearch.setToolTipText(ex.getMessage());
+                return null;
+            }
+        }
+
+        // Formats a stat only when its value moved since the last update
+        private void showStat(JLabel label, int slot, double value, String suffix) {
+            if (shownStats[slot] == value) return;
+            shownStats[slot] = value;
+            label.setText(df2.format(value) + suffix);
         }
     }
 
     // ---------- Main ----------
-    public static void main(String[] args) {
+    // No arguments: the desktop app as before. Replication across terminals:
+    //   java StudentManagementApp --primary 7000 [--headless]
+    //   java StudentManagementApp --replica localhost:7000 [--headless]
+    // Many rosters, one *.csv each, kept in memory under a budget:
+    //   java StudentManagementApp --workspace rosters/ [--budget-mb 256]
+    // Incremental export from a running primary (CDC feed, see ChangeFeed):
+    //   java StudentManagementApp --export-since <cursor|-> --from localhost:7000 [--format ndjson]
+    // Concurrent load test of both store implementations, JSON report for regression tracking:
+    //   java StudentManagementApp --loadtest both [--threads 16] [--virtual] [--seconds 10] [--warmup 2]
+    //                             [--roster 10000] [--mix add=20,update=30,...] [--report loadtest.json]
+    // Sort and merge roster CSVs of any size by roll (external merge sort, output "-" for stdout):
+    //   java StudentManagementApp --merge merged.csv a.csv b.csv ... [--policy keep-first] [--conflicts c.csv]
+    //                             [--chunk-rows 100000] [--tmp dir]
+    // Attendance check-in pipeline fed by a local generator (roster from students.csv, one log per day):
+    //   java StudentManagementApp --checkin-demo [--rate 5000] [--seconds 10] [--log-dir .]
+    //                             [--window-ms 30000] [--gates 4] [--no-fsync]
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String primaryPort = option(args, "--primary");
+        String replicaOf = option(args, "--replica");
+        boolean headless = Arrays.asList(args).contains("--headless");
+
+        String exportSince = option(args, "--export-since");
+        if (exportSince != null) {
+            String from = option(args, "--from");
+            if (from == null) throw new IllegalArgumentException("--export-since needs --from host:port of a primary.");
+            String format = option(args, "--format");
+            int colon = from.lastIndexOf(':');
+            ChangeFeed.fetch(from.substring(0, colon), Integer.parseInt(from.substring(colon + 1)), exportSince,
+                    format == null ? ChangeFeed.Format.CSV : ChangeFeed.Format.valueOf(format.toUpperCase()), System.out);
+            return;
+        }
+
+        if (replicaOf != null) {
+            int colon = replicaOf.lastIndexOf(':');
+            StudentService service = new StudentService();
+            ReplicationReplica replica = new ReplicationReplica(service,
+                    replicaOf.substring(0, colon), Integer.parseInt(replicaOf.substring(colon + 1)));
+            if (headless) {
+                replica.start();
+                runConsole(service, null, false, replica::status);
+                replica.close();
+                return;
+            }
+            SwingUtilities.invokeLater(() -> {
+                try { UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName()); } catch (Exception ignored) {}
+                new MainFrame(service, true).setVisible(true);
+                replica.start();
+            });
+            return;
+        }
+
+        String loadTarget = option(args, "--loadtest");
+        if (loadTarget != null) {
+            runLoadTest(args, loadTarget);
+            return;
+        }
+
+        String mergeOut = option(args, "--merge");
+        if (mergeOut != null) {
+            runMerge(args, mergeOut);
+            return;
+        }
+
+        if (Arrays.asList(args).contains("--checkin-demo")) {
+            runCheckInDemo(args);
+            return;
+        }
+
+        String workspaceDir = option(args, "--workspace");
+        if (workspaceDir != null) {
+            String budget = option(args, "--budget-mb");
+            long budgetBytes = (budget == null ? 256 : Long.parseLong(budget)) * 1024 * 1024;
+            try (RosterWorkspace ws = new RosterWorkspace(Paths.get(workspaceDir), budgetBytes)) {
+                runWorkspaceConsole(ws);
+            }
+            return;
+        }
+
+        if (primaryPort != null && headless) {
+            StudentService service = new StudentService();
+            CSVStorage storage = new CSVStorage("students.csv");
+            storage.loadAll(service);
+            try (ReplicationPrimary primary = new ReplicationPrimary(service, Integer.parseInt(primaryPort))) {
+                runConsole(service, storage, true, primary::status);
+            }
+            return;
+        }
+
         SwingUtilities.invokeLater(() -> {
             try { UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName()); } catch (Exception ignored) {}
-            new MainFrame().setVisible(true);
+            StudentService service = new StudentService();
+            if (primaryPort != null) {
+                try {
+                    new ReplicationPrimary(service, Integer.parseInt(primaryPort));
+                } catch (IOException ex) {
+                    JOptionPane.showMessageDialog(null, "Cannot listen on port " + primaryPort + ": " + ex.getMessage(),
+                            "Replication", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+            new MainFrame(service, false).setVisible(true);
         });
     }
+
+    private static void runLoadTest(String[] args, String target) throws IOException, InterruptedException {
+        Map<String, StudentStore> stores = new LinkedHashMap<>();
+        if (target.equals("single") || target.equals("both")) stores.put("StudentService", new StudentService());
+        if (target.equals("partitioned") || target.equals("both")) stores.put("PartitionedStudentService", PartitionedStudentService.byClass());
+        if (stores.isEmpty()) throw new IllegalArgumentException("--loadtest expects single, partitioned or both.");
+        String threads = option(args, "--threads");
+        String seconds = option(args, "--seconds");
+        String warmup = option(args, "--warmup");
+        String roster = option(args, "--roster");
+        String mix = option(args, "--mix");
+        String report = option(args, "--report");
+
+        List<String> json = new ArrayList<>();
+        for (Map.Entry<String, StudentStore> e : stores.entrySet()) {
+            LoadTest test = new LoadTest(e.getKey(), e.getValue())
+                    .virtualThreads(Arrays.asList(args).contains("--virtual"));
+            if (threads != null) test.threads(Integer.parseInt(threads));
+            if (seconds != null) test.duration(Long.parseLong(seconds) * 1000);
+            if (warmup != null) test.warmup(Long.parseLong(warmup) * 1000);
+            if (roster != null) test.seedRoster(Integer.parseInt(roster));
+            if (mix != null) test.mix(mix);
+            LoadTest.Report r = test.run();
+            System.out.print(r);
+            json.add(r.toJson());
+        }
+        Path out = Paths.get(report == null ? "loadtest.json" : report);
+        Files.write(out, Collections.singletonList("[" + String.join(",\n", json) + "]"), StandardCharsets.UTF_8);
+        System.out.println("Report written to " + out.toAbsolutePath());
+    }
+
+    private static void runMerge(String[] args, String target) throws IOException {
+        List<Path> inputs = new ArrayList<>();
+        int at = Arrays.asList(args).indexOf("--merge") + 2;
+        while (at < args.length && !args[at].startsWith("--")) inputs.add(Paths.get(args[at++]));
+        if (inputs.isEmpty()) throw new IllegalArgumentException("--merge needs an output and at least one input CSV.");
+        String policy = option(args, "--policy");
+        String chunkRows = option(args, "--chunk-rows");
+        String tmp = option(args, "--tmp");
+        String conflictsFile = option(args, "--conflicts");
+        Path tmpDir = Paths.get(tmp == null ? System.getProperty("java.io.tmpdir") : tmp);
+        RosterMerge merge = new RosterMerge(
+                policy == null ? RosterMerge.Policy.FAIL : RosterMerge.Policy.valueOf(policy.toUpperCase().replace('-', '_')),
+                chunkRows == null ? 100_000 : Integer.parseInt(chunkRows), 64, tmpDir);
+
+        boolean toStdout = target.equals("-");
+        Path out = Paths.get(target);
+        // Write beside the target (stdout: into the temp dir) and publish only once the merge succeeded,
+        // so an aborted merge leaves no partial output anywhere
+        Path partial = null;
+        Writer conflicts = null;
+        boolean merged = false;
+        try {
+            partial = toStdout ? Files.createTempFile(tmpDir, "merge-", ".csv") : out.resolveSibling(out.getFileName() + ".partial");
+            if (conflictsFile != null) conflicts = Files.newBufferedWriter(Paths.get(conflictsFile), StandardCharsets.UTF_8);
+            RosterMerge.Result result;
+            try (Writer w = Files.newBufferedWriter(partial, StandardCharsets.UTF_8)) {
+                result = merge.merge(inputs, w, conflicts);
+            }
+            if (toStdout) {
+                Files.copy(partial, System.out);
+                System.out.flush();
+            } else {
+                Files.move(partial, out, StandardCopyOption.REPLACE_EXISTING);
+            }
+            merged = true;
+            System.err.println(result);
+        } catch (IllegalArgumentException | IOException ex) {
+            String reason = ex instanceof NoSuchFileException || ex instanceof FileNotFoundException
+                    ? "file not found: " + ex.getMessage() : ex.getMessage();
+            System.err.println("Merge aborted: " + reason);
+        } finally {
+            if (conflicts != null) conflicts.close();
+            if ((toStdout || !merged) && partial != null) Files.deleteIfExists(partial);
+        }
+        if (!merged) System.exit(1);
+    }
+
+    private static void runCheckInDemo(String[] args) throws IOException, InterruptedException {
+        StudentService service = new StudentService();
+        new CSVStorage("students.csv").loadAll(service);
+        if (service.totalCount() == 0) throw new IllegalArgumentException("students.csv has no students to check in.");
+        String rate = option(args, "--rate");
+        String seconds = option(args, "--seconds");
+        String logDir = option(args, "--log-dir");
+        String window = option(args, "--window-ms");
+        String gates = option(args, "--gates");
+        int[] rolls = service.list().stream().mapToInt(Student::getRollNo).toArray();
+
+        CheckInPipeline pipeline = new CheckInPipeline(service, Paths.get(logDir == null ? "." : logDir),
+                window == null ? 30_000 : Long.parseLong(window), 1 << 16, 1024, !Arrays.asList(args).contains("--no-fsync"));
+        try (pipeline) {
+            pipeline.start();
+            CheckInGenerator generator = new CheckInGenerator(pipeline, rolls, gates == null ? 4 : Integer.parseInt(gates), 0.2, 0.02);
+            ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor();
+            ticker.scheduleAtFixedRate(() -> System.out.println(pipeline.status()), 1, 1, TimeUnit.SECONDS);
+            try {
+                generator.run(rate == null ? 5000 : Integer.parseInt(rate), (seconds == null ? 10 : Long.parseLong(seconds)) * 1000);
+            } finally {
+                ticker.shutdownNow();
+            }
+        }
+        // Printed after close so the final figures include everything drained from the ring
+        System.out.println(pipeline.status());
+        for (Map.Entry<String, Integer> e : pipeline.presentByClass().entrySet()) {
+            System.out.println(e.getKey() + ": " + e.getValue() + " present");
+        }
+        if (pipeline.getFailure() != null) {
+            System.err.println("Check-in ingestion stopped: " + pipeline.getFailure());
+            System.exit(1);
+        }
+    }
+
+    private static String option(String[] args, String name) {
+        for (int i = 0; i < args.length - 1; i++) if (args[i].equals(name)) return args[i + 1];
+        return null;
+    }
 }
@@ -0,0 +1,31 @@
+package service;
+
+import model.Student;
+
+public class StudentChangeEvent {
+    public enum Type { INSERT, UPDATE, DELETE, BULK }
+
+    private final Type type;
+    private final int rollNumber;
+    private final Student student;
+
+    public StudentChangeEvent(Type type, int rollNumber, Student student) {
+        this.type = type;
+        this.rollNumber = rollNumber;
+        this.student = student;
+    }
+
+    // Getters
+    public Type getType() {
+        return type;
+    }
+
+    public int getRollNumber() {
+        return rollNumber;
+    }
+
+    // null for DELETE and BULK
+    public Student getStudent() {
+        return student;
+    }
+}
@@ -0,0 +1,8 @@
+package service;
+
+import java.util.List;
+
+public interface StudentChangeListener {
+    // ✅ Event Dispatch Thread par ek frame ke saare changes ek saath milte hain
+    void studentsChanged(List<StudentChangeEvent> events);
+}
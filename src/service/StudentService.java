@@ -1,19 +1,36 @@
 package service;
 
 import model.Student;
+
+import javax.swing.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class StudentService {
     private List<Student> students;
+    private final List<StudentChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<StudentChangeEvent> pending = new ArrayList<>();
+    private boolean flushScheduled = false;
 
     public StudentService() {
         this.students = new ArrayList<>();
     }
 
+    // 🔔 Change listeners
+    public void addChangeListener(StudentChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeChangeListener(StudentChangeListener listener) {
+        listeners.remove(listener);
+    }
+
     // ➕ Add Student
     public void addStudent(Student student) {
         students.add(student);
+        publish(new StudentChangeEvent(StudentChangeEvent.Type.INSERT, student.getRollNumber(), student));
     }
 
     // 📜 Get All Students
@@ -27,6 +44,7 @@ public class StudentService {
             if (student.getRollNumber() == rollNumber) {
                 student.setName(newName);
                 student.setMarks(newMarks);
+                publish(new StudentChangeEvent(StudentChangeEvent.Type.UPDATE, rollNumber, student));
                 return true;
             }
         }
@@ -35,7 +53,11 @@ public class StudentService {
 
     // ❌ Delete Student by Roll Number
     public boolean deleteStudent(int rollNumber) {
-        return students.removeIf(student -> student.getRollNumber() == rollNumber);
+        boolean removed = students.removeIf(student -> student.getRollNumber() == rollNumber);
+        if (removed) {
+            publish(new StudentChangeEvent(StudentChangeEvent.Type.DELETE, rollNumber, null));
+        }
+        return removed;
     }
 
     // 🔍 Search Student by Roll Number
@@ -47,4 +69,32 @@ public class StudentService {
         }
         return null;
     }
+
+    // Changes ko queue karke ek hi EDT frame me listeners tak bhejna
+    private synchronized void publish(StudentChangeEvent event) {
+        if (event.getType() == StudentChangeEvent.Type.BULK) {
+            pending.clear();
+        }
+        pending.add(event);
+        if (!flushScheduled) {
+            flushScheduled = true;
+            SwingUtilities.invokeLater(this::flush);
+        }
+    }
+
+    private void flush() {
+        List<StudentChangeEvent> batch;
+        synchronized (this) {
+            batch = new ArrayList<>(pending);
+            pending.clear();
+            flushScheduled = false;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        batch = Collections.unmodifiableList(batch);
+        for (StudentChangeListener listener : listeners) {
+            listener.studentsChanged(batch);
+        }
+    }
 }
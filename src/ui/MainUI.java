@@ -1,12 +1,14 @@
 package ui;
 
 import model.Student;
+import service.StudentChangeEvent;
 import service.StudentService;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
+import java.util.List;
 
 public class MainUI extends JFrame {
     private StudentService studentService;
@@ -25,6 +27,7 @@ public class MainUI extends JFrame {
         tableModel = new DefaultTableModel(new Object[]{"Roll No", "Name", "Marks"}, 0);
         studentTable = new JTable(tableModel);
         refreshTable();
+        studentService.addChangeListener(this::applyChanges);
 
         // Buttons
         JButton addBtn = new JButton("➕ Add");
@@ -52,18 +55,59 @@ public class MainUI extends JFrame {
     private void refreshTable() {
         tableModel.setRowCount(0);
         for (Student student : studentService.getAllStudents()) {
-            tableModel.addRow(new Object[]{
-                    student.getRollNumber(),
-                    student.getName(),
-                    student.getMarks()
-            });
+            tableModel.addRow(toRow(student));
         }
     }
 
+    // 🔔 Sirf badle hue rows update karo, poori table dobara mat banao
+    private void applyChanges(List<StudentChangeEvent> events) {
+        for (StudentChangeEvent event : events) {
+            switch (event.getType()) {
+                case INSERT:
+                    tableModel.addRow(toRow(event.getStudent()));
+                    break;
+                case UPDATE: {
+                    int row = findRow(event.getRollNumber());
+                    if (row >= 0) {
+                        tableModel.setValueAt(event.getStudent().getName(), row, 1);
+                        tableModel.setValueAt(event.getStudent().getMarks(), row, 2);
+                    }
+                    break;
+                }
+                case DELETE: {
+                    int row = findRow(event.getRollNumber());
+                    if (row >= 0) {
+                        tableModel.removeRow(row);
+                    }
+                    break;
+                }
+                case BULK:
+                    refreshTable();
+                    break;
+            }
+        }
+    }
+
+    private int findRow(int rollNumber) {
+        for (int row = 0; row < tableModel.getRowCount(); row++) {
+            if ((int) tableModel.getValueAt(row, 0) == rollNumber) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    private Object[] toRow(Student student) {
+        return new Object[]{
+                student.getRollNumber(),
+                student.getName(),
+                student.getMarks()
+        };
+    }
+
     private void handleAdd(ActionEvent e) 
     {
         new AddStudentDialog(this, studentService); // Custom form popup
-        refreshTable(); // Table update after dialog close
     }
 
 
@@ -73,7 +117,6 @@ public class MainUI extends JFrame {
         {
             int roll = Integer.parseInt(JOptionPane.showInputDialog("Enter Roll Number to Update:"));
             new UpdateStudentDialog(this, studentService, roll); // Custom dialog
-            refreshTable();
         } 
         catch (Exception ex) 
         {
@@ -85,9 +128,7 @@ public class MainUI extends JFrame {
     private void handleDelete(ActionEvent e) {
         try {
             int roll = Integer.parseInt(JOptionPane.showInputDialog("Enter Roll Number to Delete:"));
-            if (studentService.deleteStudent(roll)) {
-                refreshTable();
-            } else {
+            if (!studentService.deleteStudent(roll)) {
                 JOptionPane.showMessageDialog(this, "Student Not Found!");
             }
         } catch (Exception ex) {